@@ -1,10 +1,17 @@
 package com.sadatmalik.optima.license;
 
+import com.sadatmalik.optima.license.config.HttpClientPoolConfig;
+import com.sadatmalik.optima.license.config.LicenseConfig;
+import com.sadatmalik.optima.license.config.OrganisationBalancerConfig;
+import com.sadatmalik.optima.license.config.OrganisationCacheConfig;
+import com.sadatmalik.optima.license.config.OrganisationHedgingConfig;
+import com.sadatmalik.optima.license.config.OrganisationWarmupConfig;
+import com.sadatmalik.optima.license.config.RedisPoolConfig;
 import com.sadatmalik.optima.license.config.ServiceConfig;
-import com.sadatmalik.optima.license.events.model.OrganisationChangeModel;
 import com.sadatmalik.optima.license.utils.UserContextInterceptor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -13,17 +20,18 @@ import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
 import org.springframework.cloud.netflix.eureka.EnableEurekaClient;
 import org.springframework.cloud.openfeign.EnableFeignClients;
-import org.springframework.cloud.stream.annotation.EnableBinding;
-import org.springframework.cloud.stream.annotation.StreamListener;
-import org.springframework.cloud.stream.messaging.Sink;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.support.ResourceBundleMessageSource;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisClientConfiguration;
 import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.servlet.LocaleResolver;
 import org.springframework.web.servlet.i18n.SessionLocaleResolver;
+import redis.clients.jedis.JedisPoolConfig;
 
 import java.util.Collections;
 import java.util.List;
@@ -52,12 +60,8 @@ import java.util.Locale;
  * The @EnableFeignClients annotation is needed to use the Feign client in your code. One
  * wouldn't typically have both Feign and Discovery clients enabled.
  *
- * The @EnableBinding(Sink.class) tells the application service to use Spring Cloud Stream
- * to bind to a message broker. Sink.class tells the service to the use the channels defined
- * in the Sink interface to listen for incoming messages.
- *
- * Spring Cloud Stream exposes a default channel on the Sink interface. This Sink interface
- * channel is called input and is used to listen for incoming messages.
+ * Organisation change events are consumed by the OrganisationChangeHandler, which binds
+ * the CustomChannels rather than the default Sink channel.
  *
  * To communicate with a specific Redis instance, we’ll expose a JedisConnectionFactory class
  * as a Spring bean. Once we have a connection to Redis, we’ll use that connection to create
@@ -68,15 +72,18 @@ import java.util.Locale;
 @Slf4j
 @SpringBootApplication
 @RequiredArgsConstructor
-@EnableConfigurationProperties(value = ServiceConfig.class)
+@EnableConfigurationProperties(value = {ServiceConfig.class, LicenseConfig.class,
+		OrganisationCacheConfig.class, HttpClientPoolConfig.class,
+		OrganisationBalancerConfig.class, OrganisationHedgingConfig.class,
+		RedisPoolConfig.class, OrganisationWarmupConfig.class})
 @RefreshScope
 @EnableEurekaClient
 @EnableDiscoveryClient
 @EnableFeignClients
-@EnableBinding(Sink.class)
 public class OptimaLicensingServiceApplication {
 
 	private final ServiceConfig serviceConfig;
+	private final RedisPoolConfig redisPoolConfig;
 
 	public static void main(String[] args) {
 		SpringApplication.run(OptimaLicensingServiceApplication.class, args);
@@ -88,12 +95,17 @@ public class OptimaLicensingServiceApplication {
 	 *
 	 * We add a UserContextInterceptor to the RestTemplate.
 	 *
+	 * The template sends its requests through the pooled, keep-alive HTTP client defined in
+	 * HttpClientConfig rather than opening a new connection for every call.
+	 *
 	 * @return load balancer-backed rest template.
 	 */
 	@LoadBalanced
 	@Bean
-	public RestTemplate getRestTemplate() {
-		RestTemplate template = new RestTemplate();
+	public RestTemplate getRestTemplate(
+			@Qualifier("organisationRequestFactory")
+					HttpComponentsClientHttpRequestFactory organisationRequestFactory) {
+		RestTemplate template = new RestTemplate(organisationRequestFactory);
 		List interceptors = template.getInterceptors();
 		if (interceptors == null) {
 			template.setInterceptors(
@@ -142,23 +154,14 @@ public class OptimaLicensingServiceApplication {
 		return messageSource;
 	}
 
-	/**
-	 * Executes this method each time a message is received from the input channel.
-	 *
-	 * Spring Cloud Stream automatically deserializes the incoming message to a Java POJO
-	 * called OrganisationChangeModel.
-	 *
-	 * @param orgChange
-	 */
-	@StreamListener(Sink.INPUT)
-	public void loggerSink(OrganisationChangeModel orgChange) {
-		log.debug("Received {} event for the organisation id {}",
-				orgChange.getAction(), orgChange.getOrganisationId());
-	}
-
 	/**
 	 * Sets up the database connection to the Redis server.
 	 *
+	 * Connections come from a Jedis pool sized and timed by the organisation.redis.*
+	 * properties, so concurrent cache lookups each get their own connection rather than
+	 * queueing, and a caller gives up after maxWait instead of blocking indefinitely. The
+	 * pool is registered in JMX so that RedisPoolMetrics can export its gauges.
+	 *
 	 * @return
 	 */
 	@Bean
@@ -166,7 +169,26 @@ public class OptimaLicensingServiceApplication {
 		String hostname = serviceConfig.getRedisServer();
 		int port = Integer.parseInt(serviceConfig.getRedisPort()); RedisStandaloneConfiguration redisStandaloneConfiguration
 				= new RedisStandaloneConfiguration(hostname, port);
-		return new JedisConnectionFactory(redisStandaloneConfiguration);
+
+		JedisPoolConfig poolConfig = new JedisPoolConfig();
+		poolConfig.setMaxTotal(redisPoolConfig.getMaxTotal());
+		poolConfig.setMaxIdle(redisPoolConfig.getMaxIdle());
+		poolConfig.setMinIdle(redisPoolConfig.getMinIdle());
+		poolConfig.setMaxWait(redisPoolConfig.getMaxWait());
+		poolConfig.setBlockWhenExhausted(true);
+		poolConfig.setTestWhileIdle(true);
+		poolConfig.setTimeBetweenEvictionRuns(redisPoolConfig.getTimeBetweenEvictionRuns());
+		poolConfig.setMinEvictableIdleTime(redisPoolConfig.getMinEvictableIdleTime());
+		poolConfig.setJmxEnabled(true);
+		poolConfig.setJmxNamePrefix(redisPoolConfig.getJmxNamePrefix());
+
+		JedisClientConfiguration clientConfiguration = JedisClientConfiguration.builder()
+				.connectTimeout(redisPoolConfig.getConnectTimeout())
+				.readTimeout(redisPoolConfig.getReadTimeout())
+				.usePooling()
+				.poolConfig(poolConfig)
+				.build();
+		return new JedisConnectionFactory(redisStandaloneConfiguration, clientConfiguration);
 	}
 
 	/**
@@ -181,4 +203,21 @@ public class OptimaLicensingServiceApplication {
 		return template;
 	}
 
+	/**
+	 * Creates the RedisTemplate used by the OrganisationBinaryRepository. Keys are plain
+	 * strings and values raw bytes, so the compact organisation encoding goes over the wire
+	 * as is rather than through JDK serialization.
+	 *
+	 * @return
+	 */
+	@Bean
+	public RedisTemplate<String, byte[]> organisationRedisTemplate() {
+		RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+		template.setConnectionFactory(jedisConnectionFactory());
+		template.setKeySerializer(RedisSerializer.string());
+		template.setValueSerializer(RedisSerializer.byteArray());
+		template.setEnableDefaultSerializer(false);
+		return template;
+	}
+
 }
@@ -0,0 +1,252 @@
+package com.sadatmalik.optima.license.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sadatmalik.optima.license.config.LicenseConfig;
+import com.sadatmalik.optima.license.events.source.LicenseInvalidationPublisher;
+import com.sadatmalik.optima.license.model.License;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A read-through, write-invalidating in-process cache of licenses, so that reads of licenses,
+ * which change rarely, do not each query MySQL.
+ *
+ * Two kinds of entry are held, both expiring after cacheTimeToLive:
+ *
+ *   - a single license, keyed by organisation and license id
+ *
+ *   - the full list of an organisation's licenses, keyed by organisation id
+ *
+ * The list is held together with the organisation's license version (see LicenseVersion)
+ * that was current when it was loaded. A caller that has read a newer version, for example to
+ * build the list's ETag, gets the list reloaded rather than an older cached one, so a list is
+ * never served under a version it predates even when this instance has not yet received the
+ * invalidation for a write made on another one.
+ *
+ * Entries are copies of the persistent fields only, and every read returns fresh copies, so
+ * that the organisation details and HATEOAS links callers add to a license never leak into
+ * the cache or into another request.
+ *
+ * Every write invalidates exactly the licenses it touched and the list of their organisation,
+ * or, when it deleted all of an organisation's licenses, every entry of the organisation.
+ * Inside a transaction the entries are dropped straight away and again once the transaction
+ * has committed, so a concurrent read cannot cache the pre-commit rows. The invalidation is
+ * then broadcast through the LicenseInvalidationPublisher, so the other licensing service
+ * instances drop the same entries, along with any cached misses in the MissingLicenseCache.
+ *
+ * Lookups are counted under license.cache.gets{scope,result}, with the share of them that hit
+ * since startup under license.cache.hit.ratio{scope}, and invalidations under
+ * license.cache.invalidations{source=local|remote}.
+ *
+ * @author sadatmalik
+ */
+@Component
+public class LicenseCache {
+
+    private final Cache<String, License> licenses;
+    private final Cache<String, VersionedLicenses> licensesByOrganisation;
+    private final MissingLicenseCache missingLicenseCache;
+    private final LicenseInvalidationPublisher publisher;
+
+    private final Counter licenseHits;
+    private final Counter licenseMisses;
+    private final Counter organisationHits;
+    private final Counter organisationMisses;
+    private final Counter localInvalidations;
+    private final Counter remoteInvalidations;
+
+    public LicenseCache(LicenseConfig config,
+                        MissingLicenseCache missingLicenseCache,
+                        LicenseInvalidationPublisher publisher,
+                        MeterRegistry meterRegistry) {
+        this.missingLicenseCache = missingLicenseCache;
+        this.publisher = publisher;
+        this.licenses = Caffeine.newBuilder()
+                .maximumSize(config.getCacheMaximumLicenses())
+                .expireAfterWrite(config.getCacheTimeToLive())
+                .build();
+        this.licensesByOrganisation = Caffeine.newBuilder()
+                .maximumSize(config.getCacheMaximumOrganisations())
+                .expireAfterWrite(config.getCacheTimeToLive())
+                .build();
+
+        this.licenseHits = gets(meterRegistry, "license", "hit");
+        this.licenseMisses = gets(meterRegistry, "license", "miss");
+        this.organisationHits = gets(meterRegistry, "organisation", "hit");
+        this.organisationMisses = gets(meterRegistry, "organisation", "miss");
+        hitRatio(meterRegistry, "license", licenseHits, licenseMisses);
+        hitRatio(meterRegistry, "organisation", organisationHits, organisationMisses);
+        this.localInvalidations = invalidations(meterRegistry, "local");
+        this.remoteInvalidations = invalidations(meterRegistry, "remote");
+    }
+
+    private static Counter gets(MeterRegistry meterRegistry, String scope, String result) {
+        return Counter.builder("license.cache.gets")
+                .description("License cache lookups")
+                .tag("scope", scope)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static void hitRatio(MeterRegistry meterRegistry, String scope, Counter hits,
+                                 Counter misses) {
+        Gauge.builder("license.cache.hit.ratio", () -> {
+                    double lookups = hits.count() + misses.count();
+                    return lookups == 0 ? 0 : hits.count() / lookups;
+                })
+                .description("Share of license cache lookups answered from the cache")
+                .tag("scope", scope)
+                .register(meterRegistry);
+    }
+
+    private static Counter invalidations(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("license.cache.invalidations")
+                .description("License cache invalidations applied")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param organisationId
+     * @param licenseId
+     * @param loader reads the license from the database
+     * @return a copy of the license, or null if there is none
+     */
+    public License getLicense(String organisationId, String licenseId,
+                              Supplier<License> loader) {
+        boolean[] loaded = new boolean[1];
+        License license = licenses.get(key(organisationId, licenseId), k -> {
+            loaded[0] = true;
+            License fromDatabase = loader.get();
+            return fromDatabase == null ? null : copy(fromDatabase);
+        });
+        (loaded[0] ? licenseMisses : licenseHits).increment();
+        return license == null ? null : copy(license);
+    }
+
+    /**
+     * @param organisationId
+     * @param minimumVersion the organisation's license version, read before calling; a list
+     * cached at an older version is reloaded. 0 accepts any cached list.
+     * @param loader reads the organisation's licenses from the database
+     * @return copies of the organisation's licenses
+     */
+    public List<License> getLicenses(String organisationId, long minimumVersion,
+                                     Supplier<List<License>> loader) {
+        boolean[] loaded = new boolean[1];
+        VersionedLicenses cached = licensesByOrganisation.getIfPresent(organisationId);
+        if (cached == null || cached.version < minimumVersion) {
+            cached = licensesByOrganisation.asMap().compute(organisationId, (k, current) -> {
+                if (current != null && current.version >= minimumVersion) {
+                    return current;
+                }
+                loaded[0] = true;
+                List<License> fromDatabase = loader.get();
+                List<License> copies = new ArrayList<>(fromDatabase.size());
+                for (License license : fromDatabase) {
+                    copies.add(copy(license));
+                }
+                return new VersionedLicenses(minimumVersion,
+                        Collections.unmodifiableList(copies));
+            });
+        }
+        (loaded[0] ? organisationMisses : organisationHits).increment();
+
+        List<License> result = new ArrayList<>(cached.licenses.size());
+        for (License license : cached.licenses) {
+            result.add(copy(license));
+        }
+        return result;
+    }
+
+    /**
+     * Invalidates the licenses and their organisation's list, on this instance and, once the
+     * surrounding transaction (if any) has committed, on every other instance.
+     *
+     * @param organisationId
+     * @param licenseIds the licenses to invalidate, or null for all of the organisation's
+     */
+    public void invalidate(String organisationId, Collection<String> licenseIds) {
+        List<String> ids = licenseIds == null ? null : new ArrayList<>(licenseIds);
+        evict(organisationId, ids);
+        localInvalidations.increment();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                            evict(organisationId, ids);
+                            publisher.publish(organisationId, ids);
+                        }
+                    });
+        } else {
+            publisher.publish(organisationId, ids);
+        }
+    }
+
+    /**
+     * Applies an invalidation published by another licensing service instance.
+     *
+     * @param organisationId
+     * @param licenseIds the licenses to evict, or null for all of the organisation's
+     */
+    public void evictRemote(String organisationId, Collection<String> licenseIds) {
+        evict(organisationId, licenseIds);
+        remoteInvalidations.increment();
+    }
+
+    private void evict(String organisationId, Collection<String> licenseIds) {
+        licensesByOrganisation.invalidate(organisationId);
+        if (licenseIds == null) {
+            String prefix = key(organisationId, "");
+            licenses.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+            return;
+        }
+        for (String licenseId : licenseIds) {
+            licenses.invalidate(key(organisationId, licenseId));
+            missingLicenseCache.forget(organisationId, licenseId);
+        }
+    }
+
+    /**
+     * An organisation's license list and the license version it was loaded at. The list was
+     * read after the version, so it is at least that new.
+     */
+    private static class VersionedLicenses {
+        private final long version;
+        private final List<License> licenses;
+
+        VersionedLicenses(long version, List<License> licenses) {
+            this.version = version;
+            this.licenses = licenses;
+        }
+    }
+
+    private static String key(String organisationId, String licenseId) {
+        return organisationId + ":" + licenseId;
+    }
+
+    private static License copy(License license) {
+        License copy = new License();
+        copy.setLicenseId(license.getLicenseId());
+        copy.setDescription(license.getDescription());
+        copy.setOrganisationId(license.getOrganisationId());
+        copy.setProductName(license.getProductName());
+        copy.setLicenseType(license.getLicenseType());
+        copy.setComment(license.getComment());
+        copy.setVersion(license.getVersion());
+        return copy;
+    }
+}
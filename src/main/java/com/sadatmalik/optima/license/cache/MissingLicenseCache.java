@@ -0,0 +1,60 @@
+package com.sadatmalik.optima.license.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sadatmalik.optima.license.config.LicenseConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers, for a short missingTimeToLive, license lookups that found nothing in the
+ * database.
+ *
+ * Without it, every request for a license that does not exist - from scraping, or a client
+ * retrying a bad id - queries MySQL again. With it, repeats of the same miss are answered
+ * from the heap until the entry expires, or until the license is created or saved. The
+ * LicenseCache forgets the entry straight away on the instance that wrote the license, and
+ * on every other instance once its invalidation arrives.
+ *
+ * Entries are keyed by organisation and license id, since a license is only ever looked up
+ * within its organisation. Lookups answered here are counted under license.cache.negative.hits.
+ *
+ * @author sadatmalik
+ */
+@Component
+public class MissingLicenseCache {
+
+    private final Cache<String, Boolean> missingLicenses;
+    private final Counter negativeHits;
+
+    public MissingLicenseCache(LicenseConfig config, MeterRegistry meterRegistry) {
+        this.missingLicenses = Caffeine.newBuilder()
+                .maximumSize(config.getMissingMaximumSize())
+                .expireAfterWrite(config.getMissingTimeToLive())
+                .build();
+        this.negativeHits = Counter.builder("license.cache.negative.hits")
+                .description("License lookups answered by a cached miss")
+                .register(meterRegistry);
+    }
+
+    public boolean isMissing(String organisationId, String licenseId) {
+        if (missingLicenses.getIfPresent(key(organisationId, licenseId)) != null) {
+            negativeHits.increment();
+            return true;
+        }
+        return false;
+    }
+
+    public void markMissing(String organisationId, String licenseId) {
+        missingLicenses.put(key(organisationId, licenseId), Boolean.TRUE);
+    }
+
+    public void forget(String organisationId, String licenseId) {
+        missingLicenses.invalidate(key(organisationId, licenseId));
+    }
+
+    private static String key(String organisationId, String licenseId) {
+        return organisationId + ":" + licenseId;
+    }
+}
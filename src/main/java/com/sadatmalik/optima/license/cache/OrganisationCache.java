@@ -0,0 +1,484 @@
+package com.sadatmalik.optima.license.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.sadatmalik.optima.license.config.OrganisationCacheConfig;
+import com.sadatmalik.optima.license.model.Organisation;
+import com.sadatmalik.optima.license.repository.OrganisationBinaryRepository;
+import com.sadatmalik.optima.license.repository.OrganisationRedisRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A tiered cache for organisation data.
+ *
+ *   - L1: a bounded in-process Caffeine cache, evicting on size and time to live. Hot
+ *   organisations are served straight from the heap.
+ *
+ *   - L2: the shared Redis cache, accessed through the OrganisationBinaryRepository. Entries
+ *   are stored in the compact OrganisationCodec format and expire after redisTimeToLive.
+ *
+ *   - L3: the organisation service itself, reached through the loader function passed in by
+ *   the calling client.
+ *
+ * Each tier is checked in turn, and a hit in a lower tier populates the tiers above it.
+ *
+ * To increase resiliency, we never let the entire call fail if we cannot communicate with
+ * the Redis server. Every Redis call goes through the RedisCacheGuard, which lets a failed
+ * call through to the next tier, and skips Redis altogether while it is degraded.
+ *
+ * An organisation the organisation service does not know about is remembered too, for a
+ * short negativeTimeToLive, in the local tier and as an expiring marker key in Redis. Repeated
+ * lookups of an unknown id, whether from scraping or a client bug, are then answered from the
+ * cache instead of each one calling the organisation service. The marker is cleared as soon
+ * as the organisation is saved, put or evicted.
+ *
+ * While readLegacyEntries is enabled, a Redis miss also checks the @RedisHash entries
+ * written by earlier releases through the OrganisationRedisRepository. A legacy entry that is
+ * found is rewritten in the new format and deleted, which also removes it from the legacy
+ * index set. Once every instance writes the new format and the legacy entries have drained,
+ * readLegacyEntries can be switched off.
+ *
+ * Hits, misses and evictions are counted per tier under the organisation.cache.* meters, and
+ * lookups answered by a negative entry under organisation.cache.gets{result=negative}.
+ * Legacy entries rewritten in the new format are counted under organisation.cache.migrations.
+ * organisation.cache.hit.ratio{tier} gives the share of each tier's lookups it answered since
+ * startup.
+ *
+ * @author sadatmalik
+ */
+@Slf4j
+@Component
+public class OrganisationCache {
+
+    static final String TIER_LOCAL  = "local";
+    static final String TIER_REDIS  = "redis";
+    static final String TIER_ORIGIN = "origin";
+
+    private final OrganisationBinaryRepository redisRepository;
+    private final OrganisationRedisRepository legacyRepository;
+    private final RedisCacheGuard redisGuard;
+    private final boolean readLegacyEntries;
+    private final Duration redisTimeToLive;
+    private final Duration negativeTimeToLive;
+    private final Cache<String, Organisation> localCache;
+    private final Cache<String, Boolean> unknownOrganisations;
+
+    private final Counter localHits;
+    private final Counter localMisses;
+    private final Counter localEvictions;
+    private final Counter redisHits;
+    private final Counter redisMisses;
+    private final Counter originLoads;
+    private final Counter localNegativeHits;
+    private final Counter redisNegativeHits;
+    private final Counter invalidations;
+    private final Counter migrations;
+
+    public OrganisationCache(OrganisationBinaryRepository redisRepository,
+                             OrganisationRedisRepository legacyRepository,
+                             RedisCacheGuard redisGuard,
+                             OrganisationCacheConfig config,
+                             MeterRegistry meterRegistry) {
+        this.redisRepository = redisRepository;
+        this.legacyRepository = legacyRepository;
+        this.redisGuard = redisGuard;
+        this.readLegacyEntries = config.isReadLegacyEntries();
+        this.redisTimeToLive = config.getRedisTimeToLive();
+        this.negativeTimeToLive = config.getNegativeTimeToLive();
+
+        this.localHits = gets(meterRegistry, TIER_LOCAL, "hit");
+        this.localMisses = gets(meterRegistry, TIER_LOCAL, "miss");
+        this.redisHits = gets(meterRegistry, TIER_REDIS, "hit");
+        this.redisMisses = gets(meterRegistry, TIER_REDIS, "miss");
+        this.originLoads = gets(meterRegistry, TIER_ORIGIN, "load");
+        this.localNegativeHits = gets(meterRegistry, TIER_LOCAL, "negative");
+        this.redisNegativeHits = gets(meterRegistry, TIER_REDIS, "negative");
+        this.localEvictions = Counter.builder("organisation.cache.evictions")
+                .description("Organisation entries evicted from a cache tier")
+                .tag("tier", TIER_LOCAL)
+                .register(meterRegistry);
+        this.invalidations = Counter.builder("organisation.cache.invalidations")
+                .description("Organisation entries invalidated in every tier by a change event")
+                .register(meterRegistry);
+        this.migrations = Counter.builder("organisation.cache.migrations")
+                .description("Legacy Redis organisation entries rewritten in the compact format")
+                .register(meterRegistry);
+
+        hitRatio(meterRegistry, TIER_LOCAL, localHits, localNegativeHits, localMisses);
+        hitRatio(meterRegistry, TIER_REDIS, redisHits, redisNegativeHits, redisMisses);
+
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(config.getLocalMaximumSize())
+                .expireAfterWrite(config.getLocalTimeToLive())
+                .removalListener((String key, Organisation value, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) {
+                        localEvictions.increment();
+                    }
+                })
+                .build();
+        this.unknownOrganisations = Caffeine.newBuilder()
+                .maximumSize(config.getLocalMaximumSize())
+                .expireAfterWrite(negativeTimeToLive)
+                .build();
+    }
+
+    /**
+     * The share of the lookups reaching the tier that it answered, positively or negatively,
+     * since startup.
+     */
+    private static void hitRatio(MeterRegistry meterRegistry, String tier, Counter hits,
+                                 Counter negativeHits, Counter misses) {
+        Gauge.builder("organisation.cache.hit.ratio", () -> {
+                    double answered = hits.count() + negativeHits.count();
+                    double lookups = answered + misses.count();
+                    return lookups == 0 ? 0 : answered / lookups;
+                })
+                .description("Share of organisation lookups answered by a cache tier")
+                .tag("tier", tier)
+                .register(meterRegistry);
+    }
+
+    private static Counter gets(MeterRegistry meterRegistry, String tier, String result) {
+        return Counter.builder("organisation.cache.gets")
+                .description("Organisation lookups per cache tier")
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Looks the organisation up in the local tier, then Redis, and finally calls the loader
+     * to retrieve it from the organisation service. Whatever is found is written back to the
+     * tiers that missed. If the organisation service returns nothing, that is cached as a
+     * negative entry for negativeTimeToLive.
+     *
+     * @param organisationId
+     * @param loader retrieves the organisation from the organisation service
+     * @return the organisation, or null if no tier knows about it
+     */
+    public Organisation getOrganisation(String organisationId,
+                                        Function<String, Organisation> loader) {
+        Organisation organisation = localCache.getIfPresent(organisationId);
+        if (organisation != null) {
+            localHits.increment();
+            return organisation;
+        }
+        if (unknownOrganisations.getIfPresent(organisationId) != null) {
+            localNegativeHits.increment();
+            return null;
+        }
+        localMisses.increment();
+
+        organisation = checkRedisCache(organisationId);
+        if (organisation != null) {
+            redisHits.increment();
+            log.debug("I have successfully retrieved an organisation {} " +
+                    "from the redis cache: {}", organisationId, organisation);
+            localCache.put(organisationId, organisation);
+            return organisation;
+        }
+        if (isKnownUnknown(organisationId)) {
+            redisNegativeHits.increment();
+            unknownOrganisations.put(organisationId, Boolean.TRUE);
+            return null;
+        }
+        redisMisses.increment();
+
+        log.debug("Unable to locate organisation from the redis cache: {}.",
+                organisationId);
+
+        return load(organisationId, loader);
+    }
+
+    /**
+     * Bulk version of getOrganisation(). The local tier is checked for every id, the ids it
+     * misses are read from Redis in one round trip, and only the ids Redis misses as well
+     * are passed to the loader. Whatever the loader returns is written back to Redis in a
+     * single pipelined round trip.
+     *
+     * @param organisationIds
+     * @param loader retrieves a single organisation from the organisation service
+     * @return the organisations found, keyed by organisation id
+     */
+    public Map<String, Organisation> getOrganisations(Collection<String> organisationIds,
+                                                      Function<String, Organisation> loader) {
+        Map<String, Organisation> organisations =
+                new HashMap<>(localCache.getAllPresent(organisationIds));
+        localHits.increment(organisations.size());
+
+        Set<String> unknown = unknownOrganisations.getAllPresent(organisationIds).keySet();
+        localNegativeHits.increment(unknown.size());
+
+        List<String> misses = new ArrayList<>();
+        for (String organisationId : organisationIds) {
+            if (!organisations.containsKey(organisationId)
+                    && !unknown.contains(organisationId)) {
+                misses.add(organisationId);
+            }
+        }
+        if (misses.isEmpty()) {
+            return organisations;
+        }
+        localMisses.increment(misses.size());
+
+        Map<String, Organisation> cached = checkRedisCache(misses);
+        redisHits.increment(cached.size());
+        localCache.putAll(cached);
+        organisations.putAll(cached);
+
+        List<String> redisMissed = new ArrayList<>();
+        for (String organisationId : misses) {
+            if (!cached.containsKey(organisationId)) {
+                redisMissed.add(organisationId);
+            }
+        }
+        Set<String> knownUnknown = knownUnknowns(redisMissed);
+        redisNegativeHits.increment(knownUnknown.size());
+        redisMisses.increment(redisMissed.size() - knownUnknown.size());
+
+        List<Organisation> loaded = new ArrayList<>();
+        List<String> notFound = new ArrayList<>();
+        for (String organisationId : redisMissed) {
+            if (knownUnknown.contains(organisationId)) {
+                unknownOrganisations.put(organisationId, Boolean.TRUE);
+                continue;
+            }
+            Organisation organisation = loader.apply(organisationId);
+            originLoads.increment();
+            if (organisation != null) {
+                localCache.put(organisationId, organisation);
+                organisations.put(organisationId, organisation);
+                loaded.add(organisation);
+            } else {
+                unknownOrganisations.put(organisationId, Boolean.TRUE);
+                notFound.add(organisationId);
+            }
+        }
+        cacheOrganisationObjects(loaded, notFound);
+        return organisations;
+    }
+
+    /**
+     * Copies whichever of the organisations Redis holds into the local tier, with one Redis
+     * round trip. Used by the startup warm-up.
+     *
+     * @param organisationIds
+     * @return the ids Redis does not hold
+     */
+    public List<String> preload(Collection<String> organisationIds) {
+        Map<String, Organisation> cached = checkRedisCache(organisationIds);
+        localCache.putAll(cached);
+
+        List<String> misses = new ArrayList<>();
+        for (String organisationId : organisationIds) {
+            if (!cached.containsKey(organisationId)) {
+                misses.add(organisationId);
+            }
+        }
+        return misses;
+    }
+
+    /**
+     * Replaces the organisation held in the local and Redis tiers, for example after a
+     * background refresh.
+     *
+     * @param organisationId
+     * @param organisation
+     */
+    public void put(String organisationId, Organisation organisation) {
+        forgetUnknown(organisationId);
+        cacheOrganisationObject(organisation);
+        localCache.put(organisationId, organisation);
+    }
+
+    /**
+     * Removes the organisation from the local and Redis tiers, so that the next lookup goes
+     * back to the organisation service. If Redis cannot be reached, the Redis delete is
+     * replayed by the RedisCacheGuard once it can.
+     *
+     * @param organisationId
+     */
+    public void evict(String organisationId) {
+        localCache.invalidate(organisationId);
+        unknownOrganisations.invalidate(organisationId);
+        redisGuard.delete("evict", organisationId, () -> {
+            redisRepository.deleteById(organisationId);
+            if (readLegacyEntries) {
+                legacyRepository.deleteById(organisationId);
+            }
+        });
+        invalidations.increment();
+    }
+
+    /**
+     * Clears any negative entry for the organisation, for example once the organisation
+     * service tells us it has been created.
+     *
+     * @param organisationId
+     */
+    public void forgetUnknown(String organisationId) {
+        unknownOrganisations.invalidate(organisationId);
+        redisGuard.delete("forgetUnknown", organisationId,
+                () -> redisRepository.forgetUnknown(organisationId));
+    }
+
+    /**
+     * Calls the organisation service, and caches either the organisation or the fact that
+     * it does not exist.
+     */
+    private Organisation load(String organisationId,
+                              Function<String, Organisation> loader) {
+        Organisation organisation = loader.apply(organisationId);
+        originLoads.increment();
+        if (organisation != null) {
+            cacheOrganisationObject(organisation);
+            localCache.put(organisationId, organisation);
+        } else {
+            cacheUnknown(organisationId);
+        }
+        return organisation;
+    }
+
+    private boolean isKnownUnknown(String organisationId) {
+        return redisGuard.call("isUnknown",
+                () -> redisRepository.isUnknown(organisationId), () -> false);
+    }
+
+    /**
+     * Reads the negative entries for several organisations in one multi-get.
+     */
+    private Set<String> knownUnknowns(List<String> organisationIds) {
+        return redisGuard.call("findUnknown",
+                () -> redisRepository.findUnknown(organisationIds), HashSet::new);
+    }
+
+    private void cacheUnknown(String organisationId) {
+        unknownOrganisations.put(organisationId, Boolean.TRUE);
+        redisGuard.run("markUnknown",
+                () -> redisRepository.markUnknown(organisationId, negativeTimeToLive));
+    }
+
+    /**
+     * Tries to retrieve an Organisation class with its organisation ID from Redis.
+     *
+     * @param organisationId
+     * @return
+     */
+    private Organisation checkRedisCache(String organisationId) {
+        return redisGuard.call("get", () -> {
+            Organisation organisation = redisRepository.findById(organisationId);
+            if (organisation == null && readLegacyEntries) {
+                organisation = legacyRepository.findById(organisationId).orElse(null);
+                if (organisation != null) {
+                    migrate(organisation);
+                }
+            }
+            return organisation;
+        }, () -> null);
+    }
+
+    /**
+     * Retrieves several organisations from Redis with a single MGET, followed by a single
+     * pipelined round trip for any misses while legacy entries are still being read.
+     *
+     * @param organisationIds
+     * @return
+     */
+    private Map<String, Organisation> checkRedisCache(Collection<String> organisationIds) {
+        return redisGuard.call("getAll", () -> {
+            Map<String, Organisation> organisations =
+                    redisRepository.findAllById(organisationIds);
+            if (readLegacyEntries && organisations.size() < organisationIds.size()) {
+                List<String> misses = new ArrayList<>();
+                for (String organisationId : organisationIds) {
+                    if (!organisations.containsKey(organisationId)) {
+                        misses.add(organisationId);
+                    }
+                }
+                Map<String, Organisation> legacy =
+                        legacyRepository.findAllByIdPipelined(misses);
+                migrateAll(legacy.values());
+                organisations.putAll(legacy);
+            }
+            return organisations;
+        }, HashMap::new);
+    }
+
+    /**
+     * Saves the organisation in Redis.
+     *
+     * @param organisation
+     */
+    private void cacheOrganisationObject(Organisation organisation) {
+        redisGuard.run("put",
+                () -> redisRepository.save(organisation, redisTimeToLive));
+    }
+
+    /**
+     * Saves the organisations, and the negative entries for the ids the organisation service
+     * does not know, in pipelined round trips.
+     *
+     * @param organisations
+     * @param unknownIds
+     */
+    private void cacheOrganisationObjects(Collection<Organisation> organisations,
+                                          Collection<String> unknownIds) {
+        if (organisations.isEmpty() && unknownIds.isEmpty()) {
+            return;
+        }
+        redisGuard.run("putAll", () -> {
+            redisRepository.saveAll(organisations, redisTimeToLive);
+            redisRepository.markAllUnknown(unknownIds, negativeTimeToLive);
+        });
+    }
+
+    /**
+     * Rewrites legacy @RedisHash entries in the compact format with one pipelined write, then
+     * removes the old hashes.
+     *
+     * @param organisations
+     */
+    private void migrateAll(Collection<Organisation> organisations) {
+        if (organisations.isEmpty()) {
+            return;
+        }
+        redisGuard.run("migrate", () -> {
+            redisRepository.saveAll(organisations, redisTimeToLive);
+            List<String> ids = new ArrayList<>(organisations.size());
+            for (Organisation organisation : organisations) {
+                ids.add(organisation.getId());
+            }
+            legacyRepository.deleteAllById(ids);
+            migrations.increment(organisations.size());
+        });
+    }
+
+    /**
+     * Rewrites a legacy @RedisHash entry in the compact format and removes the old hash
+     * and its index set membership.
+     *
+     * @param organisation
+     */
+    private void migrate(Organisation organisation) {
+        redisGuard.run("migrate", () -> {
+            redisRepository.save(organisation, redisTimeToLive);
+            legacyRepository.deleteById(organisation.getId());
+            migrations.increment();
+        });
+    }
+}
@@ -0,0 +1,135 @@
+package com.sadatmalik.optima.license.cache;
+
+import com.sadatmalik.optima.license.config.OrganisationCacheConfig;
+import com.sadatmalik.optima.license.model.Organisation;
+import com.sadatmalik.optima.license.utils.UserContextHolder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Applies organisation change events to the OrganisationCache.
+ *
+ * A SAVE clears any negative entry for the organisation, so a newly created organisation is
+ * visible straight away rather than once the negative entry expires. It also evicts the
+ * organisation, so that SAVE, UPDATE and DELETE all leave it evicted, and the last of them
+ * can stand in for a batch of events for the same organisation.
+ *
+ * A DELETE always evicts the organisation from every tier. An UPDATE evicts it as well, so
+ * that stale contact data is never served, and with the REFRESH update policy it also
+ * schedules a background refetch after the configured refresh delay. Any further UPDATE for
+ * the same organisation that arrives while that refetch is still pending is collapsed into
+ * it, so a burst of updates costs one call to the organisation service.
+ *
+ * If the refetch fails, the organisation simply stays evicted and the next lookup loads it
+ * through the normal cache tiers.
+ *
+ * @author sadatmalik
+ */
+@Slf4j
+@Component
+public class OrganisationCacheRefresher {
+
+    private final OrganisationCache organisationCache;
+    private final OrganisationCacheConfig config;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, ScheduledFuture<?>> pendingRefreshes = new ConcurrentHashMap<>();
+
+    private final Counter refreshes;
+    private final Counter collapsedUpdates;
+
+    public OrganisationCacheRefresher(OrganisationCache organisationCache,
+                                      OrganisationCacheConfig config,
+                                      MeterRegistry meterRegistry) {
+        this.organisationCache = organisationCache;
+        this.config = config;
+        this.scheduler = Executors.newScheduledThreadPool(config.getRefreshThreads());
+        this.refreshes = Counter.builder("organisation.cache.refreshes")
+                .description("Background refetches of updated organisations")
+                .register(meterRegistry);
+        this.collapsedUpdates = Counter.builder("organisation.cache.refreshes.collapsed")
+                .description("Organisation updates collapsed into an already pending refetch")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Handles a SAVE event for the organisation.
+     *
+     * @param organisationId
+     */
+    public void organisationSaved(String organisationId) {
+        organisationCache.evict(organisationId);
+        organisationCache.forgetUnknown(organisationId);
+    }
+
+    /**
+     * Handles an UPDATE event for the organisation.
+     *
+     * @param organisationId
+     * @param loader retrieves the updated organisation from the organisation service
+     */
+    public void organisationUpdated(String organisationId,
+                                    Function<String, Organisation> loader) {
+        organisationCache.evict(organisationId);
+
+        if (config.getUpdatePolicy() != OrganisationCacheConfig.UpdatePolicy.REFRESH) {
+            return;
+        }
+
+        pendingRefreshes.compute(organisationId, (id, pending) -> {
+            if (pending != null && !pending.isDone()) {
+                collapsedUpdates.increment();
+                return pending;
+            }
+            return scheduler.schedule(
+                    UserContextHolder.wrap(() -> refresh(id, loader)),
+                    config.getRefreshDelay().toMillis(), TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /**
+     * Handles a DELETE event for the organisation.
+     *
+     * @param organisationId
+     */
+    public void organisationDeleted(String organisationId) {
+        ScheduledFuture<?> pending = pendingRefreshes.remove(organisationId);
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        organisationCache.evict(organisationId);
+    }
+
+    /**
+     * The pending entry is removed before the organisation is fetched, so an UPDATE that
+     * arrives while the fetch is in flight schedules a new refresh rather than being lost.
+     */
+    private void refresh(String organisationId, Function<String, Organisation> loader) {
+        pendingRefreshes.remove(organisationId);
+        try {
+            Organisation organisation = loader.apply(organisationId);
+            if (organisation != null) {
+                organisationCache.put(organisationId, organisation);
+            }
+            refreshes.increment();
+        } catch (Exception ex) {
+            log.warn("Unable to refresh organisation {} after an update event, " +
+                    "leaving it evicted. Exception {}", organisationId, ex.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
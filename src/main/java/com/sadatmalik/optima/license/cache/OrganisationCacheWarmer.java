@@ -0,0 +1,161 @@
+package com.sadatmalik.optima.license.cache;
+
+import com.netflix.appinfo.ApplicationInfoManager;
+import com.netflix.appinfo.InstanceInfo;
+import com.sadatmalik.optima.license.config.OrganisationWarmupConfig;
+import com.sadatmalik.optima.license.repository.LicenseRepository;
+import com.sadatmalik.optima.license.service.client.OrganisationDiscoveryClient;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms the organisation cache when the instance starts, so that a freshly deployed or
+ * scaled-out instance does not send its first minutes of traffic to Redis and the organisation
+ * service.
+ *
+ * Once the application is ready, the warm-up reads the distinct organisation ids from the
+ * licenses table and splits them into batches. Each batch is read from Redis in one round
+ * trip into the local tier, and, if loadFromService is set, the organisations Redis does not
+ * hold are fetched through the OrganisationDiscoveryClient. At most concurrency batches run
+ * at once, and the whole warm-up is abandoned after timeout.
+ *
+ * The instance registers with Eureka as STARTING (eureka.instance.initial-status) and this
+ * class also reports OUT_OF_SERVICE on the health endpoint while warming. Both switch to UP
+ * when the warm-up completes, fails or times out - or straight away when it is disabled.
+ *
+ * Warmed organisations are counted under organisation.cache.warmup{source=redis|origin}, and
+ * failed origin fetches under organisation.cache.warmup{source=failed}.
+ *
+ * @author sadatmalik
+ */
+@Slf4j
+@Component
+public class OrganisationCacheWarmer implements HealthIndicator {
+
+    private final OrganisationCache organisationCache;
+    private final LicenseRepository licenseRepository;
+    private final OrganisationDiscoveryClient organisationDiscoveryClient;
+    private final ApplicationInfoManager applicationInfoManager;
+    private final OrganisationWarmupConfig config;
+
+    private final Counter fromRedis;
+    private final Counter fromOrigin;
+    private final Counter failed;
+
+    private volatile boolean warming = true;
+
+    public OrganisationCacheWarmer(OrganisationCache organisationCache,
+                                   LicenseRepository licenseRepository,
+                                   OrganisationDiscoveryClient organisationDiscoveryClient,
+                                   ApplicationInfoManager applicationInfoManager,
+                                   OrganisationWarmupConfig config,
+                                   MeterRegistry meterRegistry) {
+        this.organisationCache = organisationCache;
+        this.licenseRepository = licenseRepository;
+        this.organisationDiscoveryClient = organisationDiscoveryClient;
+        this.applicationInfoManager = applicationInfoManager;
+        this.config = config;
+        this.fromRedis = warmed(meterRegistry, "redis");
+        this.fromOrigin = warmed(meterRegistry, "origin");
+        this.failed = warmed(meterRegistry, "failed");
+    }
+
+    private static Counter warmed(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("organisation.cache.warmup")
+                .description("Organisations loaded into the cache at startup")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!config.isEnabled()) {
+            markReady();
+            return;
+        }
+        Thread warmup = new Thread(this::warmUp, "organisation-cache-warmup");
+        warmup.setDaemon(true);
+        warmup.start();
+    }
+
+    @Override
+    public Health health() {
+        return warming
+                ? Health.outOfService().withDetail("organisationCache", "warming up").build()
+                : Health.up().build();
+    }
+
+    private void warmUp() {
+        long start = System.nanoTime();
+        ExecutorService workers = Executors.newFixedThreadPool(config.getConcurrency());
+        try {
+            List<String> organisationIds = licenseRepository.findDistinctOrganisationIds(
+                    PageRequest.of(0, config.getMaxOrganisations()));
+            log.info("Warming the organisation cache with {} organisations",
+                    organisationIds.size());
+
+            List<Callable<Void>> batches = new ArrayList<>();
+            for (int from = 0; from < organisationIds.size(); from += config.getBatchSize()) {
+                List<String> batch = organisationIds.subList(from,
+                        Math.min(from + config.getBatchSize(), organisationIds.size()));
+                batches.add(() -> {
+                    warmBatch(batch);
+                    return null;
+                });
+            }
+            workers.invokeAll(batches, config.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            log.warn("Organisation cache warm-up failed: {}", ex.toString());
+        } finally {
+            workers.shutdownNow();
+            log.info("Organisation cache warm-up finished in {} ms: {} from Redis, {} from " +
+                            "the organisation service, {} failed",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    (long) fromRedis.count(), (long) fromOrigin.count(), (long) failed.count());
+            markReady();
+        }
+    }
+
+    private void warmBatch(List<String> organisationIds) {
+        List<String> misses = organisationCache.preload(organisationIds);
+        fromRedis.increment(organisationIds.size() - misses.size());
+        if (!config.isLoadFromService()) {
+            return;
+        }
+
+        for (String organisationId : misses) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            try {
+                organisationCache.getOrganisation(organisationId,
+                        organisationDiscoveryClient::getOrganisation);
+                fromOrigin.increment();
+            } catch (Exception ex) {
+                failed.increment();
+                log.debug("Unable to warm organisation {}: {}", organisationId, ex.toString());
+            }
+        }
+    }
+
+    private void markReady() {
+        warming = false;
+        applicationInfoManager.setInstanceStatus(InstanceInfo.InstanceStatus.UP);
+    }
+}
@@ -0,0 +1,213 @@
+package com.sadatmalik.optima.license.cache;
+
+import com.sadatmalik.optima.license.config.OrganisationCacheConfig;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Fast-fail guard around every call the organisation cache makes to Redis.
+ *
+ * Each call goes through the "redisCache" resilience4j circuit breaker. While Redis is healthy
+ * the call runs as normal. When enough calls fail or are slow, the breaker opens and calls are
+ * skipped straight away, returning the fallback, so a degraded Redis costs the request nothing
+ * rather than a Jedis timeout every time. Lookups simply fall through to the organisation
+ * service and writes are dropped.
+ *
+ * Deletes are never dropped. A stale entry left behind in Redis would be served to every
+ * instance until it expired, so a delete that is skipped or fails is kept as pending and
+ * replayed once Redis is reachable again: as soon as the breaker moves to half-open or
+ * closed, and on every probe while any are left. Pending deletes are keyed by operation and
+ * cache key, so repeated invalidations of one organisation are kept only once, and replaying a
+ * delete after a newer write only costs a cache miss.
+ *
+ * While the breaker is not closed, a background probe PINGs Redis every redisProbeInterval
+ * through the breaker, so it can close again without waiting for request traffic to test it.
+ *
+ * Failures are logged as a single line without the stack trace, and breaker state changes are
+ * logged once. Skipped calls are only counted, under organisation.cache.redis.skipped, with
+ * failures under organisation.cache.redis.errors, both tagged with the operation. Calls that
+ * reach Redis are timed under organisation.cache.redis.requests, tagged the same way. The
+ * deletes waiting to be replayed are gauged under organisation.cache.redis.pending.deletes.
+ *
+ * @author sadatmalik
+ */
+@Slf4j
+@Component
+public class RedisCacheGuard {
+
+    static final String CIRCUIT_BREAKER = "redisCache";
+
+    private final CircuitBreaker circuitBreaker;
+    private final RedisTemplate<String, byte[]> redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ScheduledExecutorService prober;
+
+    private final Map<String, Counter> skipped = new ConcurrentHashMap<>();
+    private final Map<String, Counter> errors = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Runnable> pendingDeletes = new ConcurrentHashMap<>();
+
+    public RedisCacheGuard(CircuitBreakerRegistry circuitBreakerRegistry,
+                           @Qualifier("organisationRedisTemplate")
+                                   RedisTemplate<String, byte[]> redisTemplate,
+                           OrganisationCacheConfig config,
+                           MeterRegistry meterRegistry) {
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER);
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.prober = Executors.newSingleThreadScheduledExecutor();
+
+        this.circuitBreaker.getEventPublisher().onStateTransition(event -> {
+            log.warn("Redis cache circuit breaker {}", event.getStateTransition());
+            CircuitBreaker.State state = event.getStateTransition().getToState();
+            if (state == CircuitBreaker.State.HALF_OPEN
+                    || state == CircuitBreaker.State.CLOSED) {
+                prober.execute(this::replayPendingDeletes);
+            }
+        });
+        Gauge.builder("organisation.cache.redis.available", circuitBreaker,
+                        cb -> cb.getState() == CircuitBreaker.State.CLOSED ? 1 : 0)
+                .description("Whether calls to the Redis cache tier are currently allowed")
+                .register(meterRegistry);
+        Gauge.builder("organisation.cache.redis.pending.deletes", pendingDeletes, Map::size)
+                .description("Redis cache deletes skipped or failed and waiting to be replayed")
+                .register(meterRegistry);
+
+        long interval = config.getRedisProbeInterval().toMillis();
+        this.prober.scheduleWithFixedDelay(this::probe, interval, interval,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs a Redis read through the circuit breaker.
+     *
+     * @param operation names the call in logs and metrics
+     * @param redisCall the call to Redis
+     * @param fallback supplies the result when the call is skipped or fails
+     * @return
+     */
+    public <T> T call(String operation, Supplier<T> redisCall, Supplier<T> fallback) {
+        Timer timer = timers.computeIfAbsent(operation, op ->
+                Timer.builder("organisation.cache.redis.requests")
+                        .description("Redis cache calls made through the circuit breaker")
+                        .tag("operation", op)
+                        .register(meterRegistry));
+        try {
+            return circuitBreaker.executeSupplier(() -> timer.record(redisCall));
+        } catch (CallNotPermittedException ex) {
+            counter(skipped, "organisation.cache.redis.skipped",
+                    "Redis cache calls skipped while the circuit breaker is open",
+                    operation).increment();
+            return fallback.get();
+        } catch (Exception ex) {
+            counter(errors, "organisation.cache.redis.errors",
+                    "Redis cache calls that failed", operation).increment();
+            log.warn("Redis cache {} failed, falling through: {}", operation, ex.toString());
+            return fallback.get();
+        }
+    }
+
+    /**
+     * Runs a Redis write through the circuit breaker. The write is dropped if it is skipped
+     * or fails.
+     *
+     * @param operation names the call in logs and metrics
+     * @param redisCall the call to Redis
+     */
+    public void run(String operation, Runnable redisCall) {
+        call(operation, () -> {
+            redisCall.run();
+            return null;
+        }, () -> null);
+    }
+
+    /**
+     * Runs a Redis delete through the circuit breaker. If the delete is skipped or fails, it
+     * is kept and replayed once Redis is reachable again.
+     *
+     * @param operation names the call in logs and metrics
+     * @param key the cache key the delete removes
+     * @param redisCall the call to Redis
+     */
+    public void delete(String operation, String key, Runnable redisCall) {
+        String pendingKey = operation + ":" + key;
+        pendingDeletes.remove(pendingKey);
+        call(operation, () -> {
+            redisCall.run();
+            return null;
+        }, () -> {
+            pendingDeletes.put(pendingKey, redisCall);
+            return null;
+        });
+    }
+
+    private void probe() {
+        if (circuitBreaker.getState() != CircuitBreaker.State.CLOSED) {
+            try {
+                circuitBreaker.executeSupplier(() -> redisTemplate.execute(
+                        (RedisCallback<String>) RedisConnection::ping));
+            } catch (Exception ex) {
+                log.debug("Redis cache probe failed: {}", ex.toString());
+                return;
+            }
+        }
+        replayPendingDeletes();
+    }
+
+    /**
+     * Replays the pending deletes through the circuit breaker, stopping at the first one
+     * that is skipped or fails. Runs only on the prober thread.
+     */
+    private void replayPendingDeletes() {
+        if (pendingDeletes.isEmpty()) {
+            return;
+        }
+        int replayed = 0;
+        for (Map.Entry<String, Runnable> pending : pendingDeletes.entrySet()) {
+            try {
+                circuitBreaker.executeRunnable(pending.getValue());
+            } catch (Exception ex) {
+                log.debug("Replaying Redis cache deletes stopped: {}", ex.toString());
+                break;
+            }
+            pendingDeletes.remove(pending.getKey(), pending.getValue());
+            replayed++;
+        }
+        if (replayed > 0) {
+            log.info("Replayed {} Redis cache deletes, {} still pending", replayed,
+                    pendingDeletes.size());
+        }
+    }
+
+    private Counter counter(Map<String, Counter> counters, String name, String description,
+                            String operation) {
+        return counters.computeIfAbsent(operation, op -> Counter.builder(name)
+                .description(description)
+                .tag("operation", op)
+                .register(meterRegistry));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        prober.shutdownNow();
+    }
+}
@@ -0,0 +1,119 @@
+package com.sadatmalik.optima.license.config;
+
+import com.sadatmalik.optima.license.utils.UserContextInterceptor;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Defines the single pooled Apache HttpClient that every call to the organisation service goes
+ * through, instead of each client opening fresh TCP connections:
+ *
+ *   - The load-balanced RestTemplate and the KeycloakRestTemplate use it through an
+ *   HttpComponentsClientHttpRequestFactory.
+ *
+ *   - Spring Cloud OpenFeign picks up the CloseableHttpClient bean in place of its own client
+ *   once feign-httpclient is on the classpath.
+ *
+ *   - The OrganisationDiscoveryClient uses the discoveryRestTemplate bean rather than
+ *   creating a RestTemplate on every call.
+ *
+ * Connections are kept alive for as long as the server allows, or for the configured keep
+ * alive when it does not say, and idle connections are evicted in the background.
+ *
+ * The KeycloakClientRequestFactory is itself an HttpComponentsClientHttpRequestFactory bean,
+ * so the shared factory is always injected by its organisationRequestFactory qualifier.
+ *
+ * The pool's leased, pending and available connection counts are exported under the
+ * httpcomponents.httpclient.pool.* meters.
+ *
+ * @author sadatmalik
+ */
+@Configuration
+public class HttpClientConfig {
+
+    static final String POOL_NAME = "organisation-service";
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager organisationConnectionManager(
+            HttpClientPoolConfig config) {
+        PoolingHttpClientConnectionManager connectionManager =
+                new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(config.getMaxTotal());
+        connectionManager.setDefaultMaxPerRoute(config.getMaxPerRoute());
+        config.getRouteMaxConnections().forEach((host, max) ->
+                connectionManager.setMaxPerRoute(
+                        new HttpRoute(HttpHost.create(host)), max));
+        return connectionManager;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient organisationHttpClient(
+            PoolingHttpClientConnectionManager organisationConnectionManager,
+            HttpClientPoolConfig config) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout((int) config.getConnectTimeout().toMillis())
+                .setSocketTimeout((int) config.getSocketTimeout().toMillis())
+                .setConnectionRequestTimeout(
+                        (int) config.getConnectionRequestTimeout().toMillis())
+                .build();
+
+        ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+            long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE
+                    .getKeepAliveDuration(response, context);
+            return keepAlive > 0 ? keepAlive : config.getKeepAlive().toMillis();
+        };
+
+        return HttpClients.custom()
+                .setConnectionManager(organisationConnectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                .evictExpiredConnections()
+                .evictIdleConnections(config.getIdleEviction().toMillis(),
+                        TimeUnit.MILLISECONDS)
+                .disableCookieManagement()
+                .build();
+    }
+
+    @Bean
+    public HttpComponentsClientHttpRequestFactory organisationRequestFactory(
+            CloseableHttpClient organisationHttpClient) {
+        return new HttpComponentsClientHttpRequestFactory(organisationHttpClient);
+    }
+
+    /**
+     * A plain, non load-balanced RestTemplate for the OrganisationDiscoveryClient, which picks
+     * the service instance itself.
+     *
+     * @param organisationRequestFactory
+     * @return
+     */
+    @Bean
+    public RestTemplate discoveryRestTemplate(
+            @Qualifier("organisationRequestFactory")
+                    HttpComponentsClientHttpRequestFactory organisationRequestFactory) {
+        RestTemplate template = new RestTemplate(organisationRequestFactory);
+        template.getInterceptors().add(new UserContextInterceptor());
+        return template;
+    }
+
+    @Bean
+    public PoolingHttpClientConnectionManagerMetricsBinder organisationConnectionPoolMetrics(
+            PoolingHttpClientConnectionManager organisationConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(
+                organisationConnectionManager, POOL_NAME);
+    }
+}
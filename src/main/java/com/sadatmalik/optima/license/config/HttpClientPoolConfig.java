@@ -0,0 +1,42 @@
+package com.sadatmalik.optima.license.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Holds the connection pool settings for the HTTP client shared by the Feign, RestTemplate
+ * and Discovery organisation clients.
+ *
+ * maxPerRoute applies to every route unless routeMaxConnections overrides it for a specific
+ * host, for example organisation.http.route-max-connections[localhost:8072]=100.
+ *
+ * @see HttpClientConfig
+ *
+ * @author sadatmalik
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "organisation.http")
+public class HttpClientPoolConfig {
+
+    private int maxTotal = 200;
+
+    private int maxPerRoute = 50;
+
+    private Map<String, Integer> routeMaxConnections = new HashMap<>();
+
+    private Duration connectTimeout = Duration.ofSeconds(2);
+
+    private Duration socketTimeout = Duration.ofSeconds(5);
+
+    private Duration connectionRequestTimeout = Duration.ofSeconds(1);
+
+    private Duration keepAlive = Duration.ofSeconds(30);
+
+    private Duration idleEviction = Duration.ofSeconds(30);
+}
@@ -0,0 +1,72 @@
+package com.sadatmalik.optima.license.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Holds the tuning parameters for the license endpoints themselves, as opposed to the
+ * ServiceConfig values served by the config server.
+ *
+ * maxPageSize caps the limit a client can ask for on a keyset-paginated license listing.
+ *
+ * bulkBatchSize is the number of licenses written per JDBC batch by the bulk endpoints, and
+ * bulkMaxItems the largest number of items a single bulk request may contain.
+ *
+ * cacheTimeToLive bounds how long the LicenseCache serves a license or an organisation's
+ * license list, and cacheMaximumLicenses and cacheMaximumOrganisations how many of each it
+ * holds.
+ *
+ * The outbox settings drive the LicenseOutboxRelay: whether this instance relays at all, the
+ * Kafka topic license change events are published to, how many events are published per
+ * batch, how long the relay waits between polls of an empty outbox, and how long it waits
+ * for Kafka to acknowledge a batch.
+ *
+ * idStrategy chooses how the LicenseIdGenerator assigns the id of a new license.
+ *
+ * missingTimeToLive is how long a lookup for a license that does not exist is remembered,
+ * and missingMaximumSize how many such misses are kept.
+ *
+ * @author sadatmalik
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "license")
+public class LicenseConfig {
+
+    private int maxPageSize = 500;
+
+    private int bulkBatchSize = 100;
+
+    private int bulkMaxItems = 10_000;
+
+    private Duration cacheTimeToLive = Duration.ofMinutes(10);
+
+    private long cacheMaximumLicenses = 50_000;
+
+    private long cacheMaximumOrganisations = 5_000;
+
+    private Duration missingTimeToLive = Duration.ofSeconds(10);
+
+    private long missingMaximumSize = 10_000;
+
+    private boolean outboxRelayEnabled = true;
+
+    private String outboxTopic = "licenseChangeTopic";
+
+    private int outboxBatchSize = 500;
+
+    private Duration outboxPollInterval = Duration.ofMillis(200);
+
+    private Duration outboxSendTimeout = Duration.ofSeconds(10);
+
+    private IdStrategy idStrategy = IdStrategy.UUID7;
+
+    public enum IdStrategy {
+        RANDOM,
+        UUID7,
+        ULID
+    }
+}
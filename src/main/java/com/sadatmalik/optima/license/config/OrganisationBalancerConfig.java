@@ -0,0 +1,49 @@
+package com.sadatmalik.optima.license.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Holds the settings for the client-side load balancer used by the
+ * OrganisationDiscoveryClient.
+ *
+ * The instance list is cached and refreshed from the discovery client every refreshInterval.
+ * The policy chooses between LATENCY, which favours instances with a low observed response
+ * time and few requests in flight, and LEAST_OUTSTANDING, which only looks at requests in
+ * flight. An instance that fails failureThreshold times in a row is ejected for
+ * ejectionDuration.
+ *
+ * A failed request is recorded in the latency average as if it had taken failurePenalty, so
+ * that an instance which fails fast does not look like the fastest instance there is.
+ *
+ * @see com.sadatmalik.optima.license.service.client.OrganisationInstanceBalancer
+ *
+ * @author sadatmalik
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "organisation.balancer")
+public class OrganisationBalancerConfig {
+
+    private String serviceId = "optima-organisation-service";
+
+    private Duration refreshInterval = Duration.ofSeconds(30);
+
+    private Policy policy = Policy.LATENCY;
+
+    private double latencyDecay = 0.3;
+
+    private int failureThreshold = 3;
+
+    private Duration ejectionDuration = Duration.ofSeconds(30);
+
+    private Duration failurePenalty = Duration.ofSeconds(5);
+
+    public enum Policy {
+        LATENCY,
+        LEAST_OUTSTANDING
+    }
+}
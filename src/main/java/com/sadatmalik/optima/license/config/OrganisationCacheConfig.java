@@ -0,0 +1,67 @@
+package com.sadatmalik.optima.license.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Holds the tuning parameters for the organisation cache tiers. The local tier is an
+ * in-process cache that sits in front of Redis, so its size and time to live bound how much
+ * heap we spend on hot organisations and how long an entry can be served without going back
+ * to Redis.
+ *
+ * The update policy decides what happens when the organisation service tells us an
+ * organisation has changed. EVICT drops the entry from every tier and lets the next lookup
+ * fetch it again. REFRESH also drops it, then refetches it in the background once the
+ * refresh delay has passed, so that a burst of updates for the same organisation costs a
+ * single call to the organisation service.
+ *
+ * redisTimeToLive is how long an organisation is kept in the Redis tier. readLegacyEntries
+ * makes Redis misses fall back to the @RedisHash entries written by earlier releases, and
+ * should stay on until those have been migrated or expired.
+ *
+ * redisProbeInterval is how often Redis is probed while the redisCache circuit breaker is
+ * not closed.
+ *
+ * coalescingTimeout is how long a lookup waits for a concurrent fetch of the same
+ * organisation before making its own call.
+ *
+ * negativeTimeToLive is how long we remember that the organisation service has no
+ * organisation for an id, so that repeated lookups of unknown ids do not each reach it.
+ *
+ * @see com.sadatmalik.optima.license.cache.OrganisationCache
+ *
+ * @author sadatmalik
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "organisation.cache")
+public class OrganisationCacheConfig {
+
+    private long localMaximumSize = 10_000;
+
+    private Duration localTimeToLive = Duration.ofMinutes(5);
+
+    private Duration redisTimeToLive = Duration.ofHours(1);
+
+    private boolean readLegacyEntries = true;
+
+    private Duration redisProbeInterval = Duration.ofSeconds(5);
+
+    private Duration negativeTimeToLive = Duration.ofSeconds(30);
+
+    private UpdatePolicy updatePolicy = UpdatePolicy.EVICT;
+
+    private Duration refreshDelay = Duration.ofMillis(500);
+
+    private int refreshThreads = 2;
+
+    private Duration coalescingTimeout = Duration.ofSeconds(2);
+
+    public enum UpdatePolicy {
+        EVICT,
+        REFRESH
+    }
+}
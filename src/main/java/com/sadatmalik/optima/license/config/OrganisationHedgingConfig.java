@@ -0,0 +1,44 @@
+package com.sadatmalik.optima.license.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Holds the settings for hedged calls to the organisation service.
+ *
+ * When enabled, a second attempt is sent if the first has not answered within the given
+ * percentile of the last sampleWindow response times (never sooner than minimumDelay, and
+ * defaultDelay until minimumSamples have been recorded). budgetRatio caps hedges at that
+ * fraction of all requests, so hedging can never double the load on the organisation
+ * service. Attempts run on a pool of threads threads with a queue of queueCapacity.
+ *
+ * @see com.sadatmalik.optima.license.service.client.OrganisationRequestHedger
+ *
+ * @author sadatmalik
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "organisation.hedging")
+public class OrganisationHedgingConfig {
+
+    private boolean enabled = false;
+
+    private double percentile = 95.0;
+
+    private Duration minimumDelay = Duration.ofMillis(20);
+
+    private Duration defaultDelay = Duration.ofMillis(100);
+
+    private int minimumSamples = 100;
+
+    private int sampleWindow = 1000;
+
+    private double budgetRatio = 0.1;
+
+    private int threads = 20;
+
+    private int queueCapacity = 100;
+}
@@ -0,0 +1,38 @@
+package com.sadatmalik.optima.license.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Holds the settings for the startup warm-up of the organisation cache.
+ *
+ * When enabled, up to maxOrganisations of the organisations that own licenses are loaded
+ * into the cache tiers in batches of batchSize, with at most concurrency batches in flight.
+ * Organisations Redis does not hold are fetched from the organisation service only if
+ * loadFromService is set. Whatever has not finished after timeout is abandoned, and the
+ * instance reports ready regardless.
+ *
+ * @see com.sadatmalik.optima.license.cache.OrganisationCacheWarmer
+ *
+ * @author sadatmalik
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "organisation.warmup")
+public class OrganisationWarmupConfig {
+
+    private boolean enabled = false;
+
+    private int concurrency = 8;
+
+    private int batchSize = 100;
+
+    private int maxOrganisations = 10_000;
+
+    private boolean loadFromService = true;
+
+    private Duration timeout = Duration.ofMinutes(2);
+}
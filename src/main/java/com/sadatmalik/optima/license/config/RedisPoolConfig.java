@@ -0,0 +1,46 @@
+package com.sadatmalik.optima.license.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Holds the Jedis connection pool settings for the Redis cache tier.
+ *
+ * maxTotal bounds the connections open to Redis, maxIdle and minIdle how many are kept warm,
+ * and maxWait how long a caller waits for a free connection before failing fast. Idle
+ * connections are tested and evicted every timeBetweenEvictionRuns once they have been idle
+ * for minEvictableIdleTime. connectTimeout and readTimeout bound each Redis command.
+ *
+ * The pool is registered in JMX under jmxNamePrefix, which is where RedisPoolMetrics reads
+ * its active, idle and waiting gauges from.
+ *
+ * @see RedisPoolMetrics
+ *
+ * @author sadatmalik
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "organisation.redis")
+public class RedisPoolConfig {
+
+    private int maxTotal = 16;
+
+    private int maxIdle = 8;
+
+    private int minIdle = 2;
+
+    private Duration maxWait = Duration.ofMillis(100);
+
+    private Duration connectTimeout = Duration.ofMillis(200);
+
+    private Duration readTimeout = Duration.ofMillis(200);
+
+    private Duration timeBetweenEvictionRuns = Duration.ofSeconds(30);
+
+    private Duration minEvictableIdleTime = Duration.ofSeconds(60);
+
+    private String jmxNamePrefix = "organisation-redis";
+}
@@ -0,0 +1,77 @@
+package com.sadatmalik.optima.license.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Exports the state of the Jedis connection pool as gauges.
+ *
+ * JedisConnectionFactory does not expose its pool, but the commons-pool2 pool underneath it
+ * registers itself in JMX under the configured jmxNamePrefix. We read the NumActive, NumIdle
+ * and NumWaiters attributes from there:
+ *
+ *   - redis.pool.active: connections currently borrowed
+ *
+ *   - redis.pool.idle: connections waiting in the pool
+ *
+ *   - redis.pool.waiting: callers blocked waiting for a connection. Anything above zero for
+ *   long means maxTotal is too small for the load.
+ *
+ * @author sadatmalik
+ */
+@Slf4j
+@Component
+public class RedisPoolMetrics implements MeterBinder {
+
+    private static final String POOL_OBJECT_NAME =
+            "org.apache.commons.pool2:type=GenericObjectPool,name=";
+
+    private final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+    private final ObjectName poolNames;
+
+    public RedisPoolMetrics(RedisPoolConfig config) throws MalformedObjectNameException {
+        this.poolNames = new ObjectName(POOL_OBJECT_NAME + config.getJmxNamePrefix() + "*");
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        gauge(registry, "redis.pool.active", "NumActive",
+                "Redis connections currently in use");
+        gauge(registry, "redis.pool.idle", "NumIdle",
+                "Idle Redis connections in the pool");
+        gauge(registry, "redis.pool.waiting", "NumWaiters",
+                "Callers waiting for a Redis connection");
+    }
+
+    private void gauge(MeterRegistry registry, String name, String attribute,
+                       String description) {
+        Gauge.builder(name, this, metrics -> metrics.sum(attribute))
+                .description(description)
+                .tag("pool", "organisation-cache")
+                .register(registry);
+    }
+
+    /**
+     * Sums the attribute over every matching pool, of which there is normally one. Reads
+     * 0 until the pool has been created.
+     */
+    private double sum(String attribute) {
+        double total = 0;
+        for (ObjectName pool : mBeanServer.queryNames(poolNames, null)) {
+            try {
+                total += ((Number) mBeanServer.getAttribute(pool, attribute)).doubleValue();
+            } catch (Exception ex) {
+                log.debug("Unable to read {} from {}: {}", attribute, pool, ex.toString());
+            }
+        }
+        return total;
+    }
+}
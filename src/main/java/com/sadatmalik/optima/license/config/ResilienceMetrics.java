@@ -0,0 +1,73 @@
+package com.sadatmalik.optima.license.config;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkhead;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkheadRegistry;
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts the calls rejected by the resilience4j bulkheads and rate limiters.
+ *
+ * resilience4j-micrometer already exports the circuit breaker, retry and time limiter calls,
+ * including the calls a circuit breaker did not permit and the calls retried, but for
+ * bulkheads and rate limiters only their current capacity. This binder adds
+ * resilience4j.bulkhead.rejected{name,type} and resilience4j.ratelimiter.rejected{name},
+ * for the instances that exist at startup and any created later.
+ *
+ * @author sadatmalik
+ */
+@Component
+public class ResilienceMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    public ResilienceMetrics(BulkheadRegistry bulkheadRegistry,
+                             ThreadPoolBulkheadRegistry threadPoolBulkheadRegistry,
+                             RateLimiterRegistry rateLimiterRegistry,
+                             MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+
+        bulkheadRegistry.getAllBulkheads().forEach(this::bind);
+        bulkheadRegistry.getEventPublisher()
+                .onEntryAdded(event -> bind(event.getAddedEntry()));
+
+        threadPoolBulkheadRegistry.getAllBulkheads().forEach(this::bind);
+        threadPoolBulkheadRegistry.getEventPublisher()
+                .onEntryAdded(event -> bind(event.getAddedEntry()));
+
+        rateLimiterRegistry.getAllRateLimiters().forEach(this::bind);
+        rateLimiterRegistry.getEventPublisher()
+                .onEntryAdded(event -> bind(event.getAddedEntry()));
+    }
+
+    private void bind(Bulkhead bulkhead) {
+        Counter rejected = bulkheadRejections(bulkhead.getName(), "semaphore");
+        bulkhead.getEventPublisher().onCallRejected(event -> rejected.increment());
+    }
+
+    private void bind(ThreadPoolBulkhead bulkhead) {
+        Counter rejected = bulkheadRejections(bulkhead.getName(), "threadpool");
+        bulkhead.getEventPublisher().onCallRejected(event -> rejected.increment());
+    }
+
+    private void bind(RateLimiter rateLimiter) {
+        Counter rejected = Counter.builder("resilience4j.ratelimiter.rejected")
+                .description("Calls rejected by a rate limiter")
+                .tag("name", rateLimiter.getName())
+                .register(meterRegistry);
+        rateLimiter.getEventPublisher().onFailure(event -> rejected.increment());
+    }
+
+    private Counter bulkheadRejections(String name, String type) {
+        return Counter.builder("resilience4j.bulkhead.rejected")
+                .description("Calls rejected by a full bulkhead")
+                .tag("name", name)
+                .tag("type", type)
+                .register(meterRegistry);
+    }
+}
@@ -5,12 +5,11 @@ import org.keycloak.adapters.springsecurity.authentication.KeycloakAuthenticatio
 import org.keycloak.adapters.springsecurity.client.KeycloakClientRequestFactory;
 import org.keycloak.adapters.springsecurity.client.KeycloakRestTemplate;
 import org.keycloak.adapters.springsecurity.config.KeycloakWebSecurityConfigurerAdapter;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.context.annotation.Scope;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -64,6 +63,9 @@ public class SecurityConfig extends KeycloakWebSecurityConfigurerAdapter {
     @Autowired
     public KeycloakClientRequestFactory keycloakClientRequestFactory;
 
+    @Autowired
+    private CloseableHttpClient organisationHttpClient;
+
     /**
      * We need to ensure that the HTTP Authorization header is injected into the application
      * call to the organization service.
@@ -75,13 +77,18 @@ public class SecurityConfig extends KeycloakWebSecurityConfigurerAdapter {
      * to expose it as a bean that can be autowired into a service calling another protected
      * service.
      *
+     * The KeycloakClientRequestFactory adds the bearer token of the current principal to each
+     * request as it is sent, so a single template can be shared by every caller. It is backed
+     * by the pooled HTTP client from HttpClientConfig so that connections to the organisation
+     * service are kept alive and reused.
+     *
      * @see com.sadatmalik.optima.license.service.client.OrganisationRestTemplateClient
      *
      * @return
      */
     @Bean
-    @Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
     public KeycloakRestTemplate keycloakRestTemplate() {
+        keycloakClientRequestFactory.setHttpClient(organisationHttpClient);
         return new KeycloakRestTemplate(keycloakClientRequestFactory);
     }
 
@@ -1,20 +1,38 @@
 package com.sadatmalik.optima.license.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sadatmalik.optima.license.model.BulkLicenseResult;
 import com.sadatmalik.optima.license.model.License;
+import com.sadatmalik.optima.license.service.InvalidLicenseRequestException;
 import com.sadatmalik.optima.license.service.LicenseService;
 import com.sadatmalik.optima.license.utils.UserContextHolder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.MessageSource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.util.UriUtils;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeoutException;
 
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
-
 /**
  * The @RestController is a class-level Java annotation that tells the Spring container that
  * this Java class will be used for a REST-based service. This annotation automatically handles
@@ -25,54 +43,77 @@ import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
  * return a ResponseBody class from your method in the controller class. This is all handled by
  * the presence of the @RestController annotation, which includes the @ResponseBody annotation.
  *
- * WebMvcLinkBuilder is a utility class for creating links on the controller classes. We are
- * using it to generate HATEOAS links for our controller.
+ * LicenseLinks generates the HATEOAS links for our controller, from link templates resolved
+ * once at startup.
  *
  * @author sadatmalik
  */
 @Slf4j
 @RestController
 @RequiredArgsConstructor
-@RequestMapping(value="v1/organisation/{organisationId}/license")
+@RequestMapping(value=LicenseController.BASE_PATH)
 public class LicenseController {
 
+    // Shared with LicenseLinks, which builds the license links from the same templates
+    static final String BASE_PATH = "v1/organisation/{organisationId}/license";
+    static final String LICENSE_PATH = "/{licenseId}";
+
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String NDJSON_VALUE = "application/x-ndjson";
+
     private final LicenseService licenseService;
+    private final ObjectMapper objectMapper;
+    private final LicenseLinks licenseLinks;
+    private final MessageSource messages;
 
     /**
      * This method implements the GET verb used in a REST call and returns a single
      * License class instance.
      *
      * We also create the HATEOAS configuration to retrieve the links for the
-     * LicenseController class.
+     * LicenseController class. The link templates are resolved once by LicenseLinks, so a
+     * request only substitutes the ids into them. Machine clients that never follow the
+     * links can pass links=false to leave them out altogether.
+     *
+     * Clients that only need some of the license's columns can list them in the fields
+     * parameter, for example fields=licenseId,licenseType. Only those columns are selected
+     * from the database and returned, without links. A field that cannot be selected is
+     * answered with 400 Bad Request.
+     *
+     * The full license is returned with its version as a strong ETag, for use in the
+     * If-Match header of a later PATCH.
      *
      * @return returns a license in a ResponseEntity representing the entire HTTP
      * response, including the status code, the headers, and the body. If successful, it
      * allows us to return the License object as the body and the 200(OK) status code as
      * the HTTP response of the service.
      */
-    @GetMapping(value="/{licenseId}")
-    public ResponseEntity<License> getLicense(
+    @GetMapping(value=LICENSE_PATH)
+    public ResponseEntity<?> getLicense(
             @PathVariable("organisationId") String organisationId,
-            @PathVariable("licenseId") String licenseId) {
+            @PathVariable("licenseId") String licenseId,
+            @RequestParam(value = "links", defaultValue = "true") boolean links,
+            @RequestParam(value = "fields", required = false) List<String> fields,
+            @RequestHeader(value = "Accept-Language",required = false)
+                    Locale locale) {
+
+        if (fields != null && !fields.isEmpty()) {
+            return ResponseEntity.ok(licenseService
+                    .getLicenseFields(organisationId, licenseId, fields, locale));
+        }
 
         License license = licenseService
                 .getLicense(licenseId,organisationId);
 
-        license.add(
-                linkTo(methodOn(LicenseController.class)
-                        .getLicense(organisationId, license.getLicenseId()))
-                        .withSelfRel(),
-                linkTo(methodOn(LicenseController.class)
-                        .createLicense(organisationId, license, null))
-                        .withRel("createLicense"),
-                linkTo(methodOn(LicenseController.class)
-                        .updateLicense(organisationId, license))
-                        .withRel("updateLicense"),
-                linkTo(methodOn(LicenseController.class)
-                        .deleteLicense(organisationId, license.getLicenseId()))
-                        .withRel("deleteLicense"));
+        if (links) {
+            licenseLinks.addLinks(license, organisationId);
+        }
 
-        return ResponseEntity.ok(license);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (license.getVersion() != null) {
+            response.eTag(String.valueOf(license.getVersion()));
+        }
+        return response.body(license);
     }
 
     /**
@@ -109,6 +150,27 @@ public class LicenseController {
                 licenseId, clientType);
     }
 
+    /**
+     * The asynchronous version of getLicensesWithClient(), selected by adding async=true to
+     * the query string. Returning a CompletableFuture hands the request over to Spring MVC
+     * async processing, so the Tomcat worker thread is released while the license and
+     * organisation lookups run on their own bulkhead thread pool.
+     *
+     * @param organisationId
+     * @param licenseId
+     * @param clientType
+     * @return
+     */
+    @GetMapping(value="/{licenseId}/{clientType}", params = "async=true")
+    public CompletableFuture<License> getLicensesWithClientAsync(
+            @PathVariable("organisationId") String organisationId,
+            @PathVariable("licenseId") String licenseId,
+            @PathVariable("clientType") String clientType) {
+
+        return licenseService.getLicenseAsync(organisationId,
+                licenseId, clientType);
+    }
+
     /**
      * we use the @PathVariable and the @RequestBody annotations in the parameter body
      * of the updateLicense() method. @RequestBody maps the HTTPRequest body to a transfer
@@ -148,22 +210,406 @@ public class LicenseController {
                 .createLicense(request, organisationId, locale));
     }
 
-    @DeleteMapping(value="/{licenseId}")
+    /**
+     * Changes only the license attributes present in the request body, for example
+     * {"comment": "renewed"}, in a single UPDATE statement. The attributes that can be
+     * changed are description, productName, licenseType and comment. An empty body, any other
+     * attribute, a value that is not a string, or a blank productName or licenseType is
+     * answered with 400 Bad Request.
+     *
+     * With an If-Match header carrying the ETag returned by getLicense(), the change is only
+     * applied if nobody has changed the license since, and a 412 is returned otherwise.
+     * Without one, the change is applied whatever the license's current version.
+     *
+     * @param organisationId
+     * @param licenseId
+     * @param changes the new attribute values, by attribute name
+     * @param ifMatch the ETag of the license version the changes are based on
+     * @param locale receive the language from the request Accept-Language header.
+     * @return
+     */
+    @PatchMapping(value=LICENSE_PATH)
+    public ResponseEntity<String> patchLicense(
+            @PathVariable("organisationId") String organisationId,
+            @PathVariable("licenseId") String licenseId,
+            @RequestBody Map<String, Object> changes,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestHeader(value = "Accept-Language",required = false)
+                    Locale locale) {
+
+        Long expectedVersion = expectedVersion(ifMatch, licenseId);
+        String message = licenseService.patchLicense(organisationId, licenseId, changes,
+                expectedVersion, locale);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (expectedVersion != null) {
+            response.eTag(String.valueOf(expectedVersion + 1));
+        }
+        return response.body(message);
+    }
+
+    /**
+     * Deletes all of the organisation's licenses, with a single DELETE statement.
+     *
+     * @param organisationId
+     * @param locale receive the language from the request Accept-Language header.
+     * @return
+     */
+    @DeleteMapping(value="/")
+    public ResponseEntity<String> deleteOrganisationLicenses(
+            @PathVariable("organisationId") String organisationId,
+            @RequestHeader(value = "Accept-Language",required = false)
+                    Locale locale) {
+
+        return ResponseEntity.ok(licenseService
+                .deleteLicensesByOrganisation(organisationId, locale));
+    }
+
+    /**
+     * A write based on a license version that is no longer current, from an If-Match
+     * header or the version in a PUT body, is answered with 412 Precondition Failed.
+     *
+     * @param ex
+     * @param locale resolved from the request Accept-Language header
+     * @return
+     */
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity<String> handleVersionConflict(
+            ObjectOptimisticLockingFailureException ex, Locale locale) {
+
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                .body(String.format(messages.getMessage(
+                        "license.version.conflict.message", null, locale),
+                        ex.getIdentifier()));
+    }
+
+    /**
+     * A request the service rejects because of what the client sent, such as a fields
+     * parameter naming a column that cannot be selected, a PATCH of a field that cannot be
+     * changed or a bulk request over license.bulk-max-items, is answered with 400 Bad
+     * Request, with the message in the language of the request.
+     *
+     * @param ex
+     * @return
+     */
+    @ExceptionHandler(InvalidLicenseRequestException.class)
+    public ResponseEntity<String> handleInvalidRequest(InvalidLicenseRequestException ex) {
+        return ResponseEntity.badRequest().body(ex.getMessage());
+    }
+
+    @DeleteMapping(value=LICENSE_PATH)
     public ResponseEntity<String> deleteLicense(
             @PathVariable("organisationId") String organisationId,
             @PathVariable("licenseId") String licenseId) {
 
         return ResponseEntity.ok(licenseService
-                .deleteLicense(licenseId));
+                .deleteLicense(organisationId, licenseId));
+    }
+
+    /**
+     * Bulk version of createLicense(). Accepts an array of licenses and creates them in
+     * JDBC batches inside one transaction.
+     *
+     * @param organisationId
+     * @param request the licenses to create
+     * @param locale receive the language from the request Accept-Language header.
+     * @return one result per license, carrying the generated license id
+     */
+    @PostMapping(value="/bulk")
+    public ResponseEntity<List<BulkLicenseResult>> createLicenses(
+            @PathVariable("organisationId") String organisationId,
+            @RequestBody List<License> request,
+            @RequestHeader(value = "Accept-Language",required = false)
+                    Locale locale) {
+
+        return ResponseEntity.ok(licenseService
+                .createLicenses(request, organisationId, locale));
     }
 
+    /**
+     * Bulk version of updateLicense().
+     *
+     * @param organisationId
+     * @param request the licenses to update, identified by their license ids
+     * @param locale receive the language from the request Accept-Language header.
+     * @return one result per license
+     */
+    @PutMapping(value="/bulk")
+    public ResponseEntity<List<BulkLicenseResult>> updateLicenses(
+            @PathVariable("organisationId") String organisationId,
+            @RequestBody List<License> request,
+            @RequestHeader(value = "Accept-Language",required = false)
+                    Locale locale) {
+
+        return ResponseEntity.ok(licenseService
+                .updateLicenses(request, organisationId, locale));
+    }
+
+    /**
+     * Bulk version of deleteLicense(). The request body is an array of license ids.
+     *
+     * @param organisationId
+     * @param licenseIds the ids of the licenses to delete
+     * @param locale receive the language from the request Accept-Language header.
+     * @return one result per license id
+     */
+    @DeleteMapping(value="/bulk")
+    public ResponseEntity<List<BulkLicenseResult>> deleteLicenses(
+            @PathVariable("organisationId") String organisationId,
+            @RequestBody List<String> licenseIds,
+            @RequestHeader(value = "Accept-Language",required = false)
+                    Locale locale) {
+
+        return ResponseEntity.ok(licenseService
+                .deleteLicenses(licenseIds, organisationId, locale));
+    }
+
+    /**
+     * Without a limit, returns every license of the organisation as before.
+     *
+     * With a limit, returns a single page of licenses ordered by license id. When there may
+     * be more licenses, the X-Next-Cursor response header carries the cursor to pass as the
+     * after parameter to fetch the next page:
+     *
+     *   - GET v1/organisation/<organisationID>/license/?limit=100
+     *   - GET v1/organisation/<organisationID>/license/?limit=100&after=<X-Next-Cursor>
+     *
+     * With fields, for example fields=licenseId,licenseType, only those columns (and the
+     * license id) are selected and returned for each license, paginated the same way. An unknown
+     * field is answered with 400 Bad Request.
+     *
+     * Every response carries an ETag built from the organisation's license version and a
+     * 128 bit SHA-256 digest of the URL-encoded query parameters, so different pages or
+     * fieldsets at the same version never share a tag. A client polling the list sends it
+     * back in If-None-Match, and while none of the organisation's licenses has changed it
+     * receives a 304 with no body, which costs a single primary key lookup rather than the
+     * list query. The version is read before the list, so a write that lands in between can
+     * only make the ETag older than the body, and the next poll fetches the list again. The
+     * same version is passed to the unpaged lookup, so that a list cached on this instance
+     * before that version is reloaded rather than sent under it.
+     *
+     * If the version cannot be read, the list is still returned (or the fallback list, if
+     * the database really is down), only without an ETag.
+     *
+     * The ETag is weak (W/"...") because Tomcat does not gzip responses that carry a strong
+     * ETag, and large lists are exactly the responses we want compressed. The tag still
+     * changes with every write, so If-None-Match matches only an unchanged list.
+     *
+     * @param organisationId
+     * @param limit the page size, capped at license.max-page-size
+     * @param after the cursor returned with the previous page
+     * @param fields the license columns to return, or all of them if absent
+     * @param ifNoneMatch the ETag of the list the client already has, if any
+     * @param locale receive the language from the request Accept-Language header.
+     * @return
+     * @throws TimeoutException
+     */
     @RequestMapping(value="/", method = RequestMethod.GET)
-    public List<License> getLicenses(
+    public ResponseEntity<List<?>> getLicenses(
+            @PathVariable("organisationId") String organisationId,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "fields", required = false) List<String> fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                    String ifNoneMatch,
+            @RequestHeader(value = "Accept-Language",required = false)
+                    Locale locale)
+            throws TimeoutException {
+        log.debug("LicenseServiceController Correlation id: {}",
+                UserContextHolder.getContext().getCorrelationId());
+
+        Long version = licenseService.getLicenseVersion(organisationId);
+        String eTag = version == null ? null
+                : licenseListETag(version, limit, after, fields);
+        if (eTag != null && matches(ifNoneMatch, eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+
+        if (fields != null && !fields.isEmpty()) {
+            List<Map<String, Object>> licenses = licenseService
+                    .getLicenseFields(organisationId, fields, after, limit, locale);
+
+            ResponseEntity.BodyBuilder response = ok(eTag);
+            if (limit != null && !licenses.isEmpty()
+                    && licenses.size() >= licenseService.pageSize(limit)) {
+                response.header(NEXT_CURSOR_HEADER,
+                        String.valueOf(licenses.get(licenses.size() - 1).get("licenseId")));
+            }
+            return response.body(licenses);
+        }
+
+        if (limit == null) {
+            List<License> licenses = licenseService.getLicensesByOrganisation(organisationId,
+                    version == null ? 0 : version);
+            // The fallback list is not the organisation's licenses at this version, so it
+            // must not be cached by the client under the version's ETag.
+            return LicenseService.isFallback(licenses)
+                    ? ResponseEntity.ok(licenses)
+                    : ok(eTag).body(licenses);
+        }
+
+        List<License> licenses = licenseService
+                .getLicensesByOrganisation(organisationId, after, limit);
+
+        // The service caps the page at license.max-page-size, so a full page is one of the
+        // capped size, not of the requested limit.
+        ResponseEntity.BodyBuilder response = ok(eTag);
+        if (!licenses.isEmpty() && licenses.size() >= licenseService.pageSize(limit)) {
+            response.header(NEXT_CURSOR_HEADER,
+                    licenses.get(licenses.size() - 1).getLicenseId());
+        }
+        return response.body(licenses);
+    }
+
+    /**
+     * Reads the expected license version from an If-Match header. A * matches whatever
+     * version the license has. Anything other than a strong ETag holding a version can never
+     * match, so it fails straight away.
+     */
+    private static Long expectedVersion(String ifMatch, String licenseId) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String eTag = ifMatch.trim();
+        if (eTag.length() > 2 && eTag.startsWith("\"") && eTag.endsWith("\"")) {
+            try {
+                return Long.valueOf(eTag.substring(1, eTag.length() - 1));
+            } catch (NumberFormatException ex) {
+                // fall through
+            }
+        }
+        throw new ObjectOptimisticLockingFailureException(License.class, licenseId);
+    }
+
+    private static String licenseListETag(long version, Integer limit, String after,
+                                          List<String> fields) {
+        // Absent parameters are left out, and every value is URL-encoded, so that distinct
+        // queries always have distinct canonical forms
+        StringBuilder query = new StringBuilder();
+        if (limit != null) {
+            query.append("limit=").append(limit);
+        }
+        if (after != null) {
+            query.append("&after=").append(UriUtils.encode(after, StandardCharsets.UTF_8));
+        }
+        if (fields != null) {
+            for (String field : fields) {
+                query.append("&fields=").append(UriUtils.encode(field, StandardCharsets.UTF_8));
+            }
+        }
+
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256")
+                    .digest(query.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+        StringBuilder eTag = new StringBuilder("W/\"").append(version).append('-');
+        for (int i = 0; i < 16; i++) {
+            eTag.append(Character.forDigit((digest[i] >> 4) & 0xf, 16))
+                    .append(Character.forDigit(digest[i] & 0xf, 16));
+        }
+        return eTag.append('"').toString();
+    }
+
+    /**
+     * A 200 response carrying the ETag, or no ETag if the license version could not be read.
+     */
+    private static ResponseEntity.BodyBuilder ok(String eTag) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        return eTag == null ? response : response.eTag(eTag);
+    }
+
+    /**
+     * Weak comparison of the If-None-Match header, as used for GET: the W/ prefixes are
+     * ignored, and * matches any current representation.
+     */
+    private static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaqueTag = eTag.substring(2);
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*")) {
+                return true;
+            }
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The asynchronous version of getLicenses(), selected by adding async=true to the query
+     * string. The repository call runs on the bulkheadLicenseService thread pool under a
+     * time limiter, and the Tomcat worker thread is released until it completes.
+     *
+     * @param organisationId
+     * @return
+     * @throws TimeoutException
+     */
+    @GetMapping(value="/", params = "async=true")
+    public CompletableFuture<List<License>> getLicensesAsync(
             @PathVariable("organisationId") String organisationId)
             throws TimeoutException {
         log.debug("LicenseServiceController Correlation id: {}",
                 UserContextHolder.getContext().getCorrelationId());
-        return licenseService.getLicensesByOrganisation(organisationId);
+        return licenseService.getLicensesByOrganisationAsync(organisationId);
+    }
+
+    /**
+     * Streams every license of the organisation as newline-delimited JSON, writing each row
+     * as it is read from the database instead of building the whole list in memory first.
+     * The response body is written on an MVC async thread once this method returns.
+     *
+     * @param organisationId
+     * @return
+     */
+    @GetMapping(value="/stream", produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamLicenses(
+            @PathVariable("organisationId") String organisationId) {
+
+        ObjectWriter writer = objectMapper.writerFor(License.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory()
+                    .createGenerator(outputStream)) {
+                generator.setRootValueSeparator(new SerializedString("\n"));
+                licenseService.streamLicensesByOrganisation(organisationId, license -> {
+                    try {
+                        writer.writeValue(generator, license);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+                generator.writeRaw('\n');
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON_VALUE))
+                .body(body);
+    }
+
+    /**
+     * Returns the organisation's licenses already enriched with the organisation name and
+     * contact details, so that dashboards rendering many licenses do not need one
+     * getLicensesWithClient() call per license.
+     *
+     * @param organisationId
+     * @return
+     */
+    @GetMapping(value="/enriched")
+    public List<License> getEnrichedLicenses(
+            @PathVariable("organisationId") String organisationId) {
+        return licenseService.getEnrichedLicensesByOrganisation(organisationId);
     }
 
 }
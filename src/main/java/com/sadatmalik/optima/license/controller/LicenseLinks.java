@@ -0,0 +1,66 @@
+package com.sadatmalik.optima.license.controller;
+
+import com.sadatmalik.optima.license.model.License;
+import org.springframework.hateoas.Link;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds the HATEOAS links returned with a single license.
+ *
+ * linkTo(methodOn(LicenseController.class)...) creates a proxy of the controller and reflects
+ * over the recorded invocation for every link, on every request. Here the links are built
+ * from the same path constants the controller's request mappings are declared with, and each
+ * request only substitutes the organisation and license ids into them and prefixes the
+ * current context path. The links come out the same as those WebMvcLinkBuilder produced, and
+ * changing the signature of a controller method cannot break them.
+ *
+ * @author sadatmalik
+ */
+@Component
+class LicenseLinks {
+
+    private static final String ORGANISATION_ID = "{organisationId}";
+    private static final String LICENSE_ID = "{licenseId}";
+
+    // getLicense() and deleteLicense() are mapped to the license path, createLicense() and
+    // updateLicense() to the controller's base path
+    private static final String LICENSE_TEMPLATE =
+            "/" + LicenseController.BASE_PATH + LicenseController.LICENSE_PATH;
+    private static final String LICENSES_TEMPLATE = "/" + LicenseController.BASE_PATH;
+
+    /**
+     * Adds the self, createLicense, updateLicense and deleteLicense links to the license.
+     *
+     * @param license
+     * @param organisationId
+     * @return the license
+     */
+    License addLinks(License license, String organisationId) {
+        String base = ServletUriComponentsBuilder.fromCurrentServletMapping().toUriString();
+        String organisation = UriUtils.encodePathSegment(organisationId,
+                StandardCharsets.UTF_8);
+        String licenseId = license.getLicenseId() == null ? ""
+                : UriUtils.encodePathSegment(license.getLicenseId(), StandardCharsets.UTF_8);
+
+        license.add(
+                Link.of(expand(base, LICENSE_TEMPLATE, organisation, licenseId))
+                        .withSelfRel(),
+                Link.of(expand(base, LICENSES_TEMPLATE, organisation, licenseId))
+                        .withRel("createLicense"),
+                Link.of(expand(base, LICENSES_TEMPLATE, organisation, licenseId))
+                        .withRel("updateLicense"),
+                Link.of(expand(base, LICENSE_TEMPLATE, organisation, licenseId))
+                        .withRel("deleteLicense"));
+        return license;
+    }
+
+    private static String expand(String base, String template, String organisationId,
+                                 String licenseId) {
+        return base + template.replace(ORGANISATION_ID, organisationId)
+                .replace(LICENSE_ID, licenseId);
+    }
+}
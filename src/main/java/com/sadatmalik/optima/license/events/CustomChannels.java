@@ -1,6 +1,8 @@
 package com.sadatmalik.optima.license.events;
 
 import org.springframework.cloud.stream.annotation.Input;
+import org.springframework.cloud.stream.annotation.Output;
+import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.SubscribableChannel;
 
 /**
@@ -18,7 +20,12 @@ import org.springframework.messaging.SubscribableChannel;
  * We need to inject the CustomChannels interface into a class that’s going to use it to
  * process messages.
  *
+ * licenseInvalidations and inboundLicenseInvalidations are bound to the same destination,
+ * with no consumer group on the input, so that every licensing service instance hears about
+ * the license cache entries a write on any other instance has made stale.
+ *
  * @see com.sadatmalik.optima.license.events.handler.OrganisationChangeHandler
+ * @see com.sadatmalik.optima.license.events.handler.LicenseInvalidationHandler
  *
  * @author sadatmalik
  */
@@ -27,6 +34,12 @@ public interface CustomChannels {
     @Input("inboundOrgChanges")
     SubscribableChannel orgs();
 
+    @Input("inboundLicenseInvalidations")
+    SubscribableChannel licenseInvalidationsIn();
+
+    @Output("licenseInvalidations")
+    MessageChannel licenseInvalidations();
+
 //    @Output("outboundOrg")
 //    MessageChannel outboundOrg();
 }
\ No newline at end of file
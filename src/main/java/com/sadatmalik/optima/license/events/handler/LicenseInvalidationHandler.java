@@ -0,0 +1,45 @@
+package com.sadatmalik.optima.license.events.handler;
+
+import com.sadatmalik.optima.license.cache.LicenseCache;
+import com.sadatmalik.optima.license.events.model.LicenseInvalidationModel;
+import com.sadatmalik.optima.license.events.source.LicenseInvalidationPublisher;
+import com.sadatmalik.optima.license.utils.UserContext;
+import com.sadatmalik.optima.license.utils.UserContextHolder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.stream.annotation.StreamListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies the license cache invalidations published by the other licensing service instances
+ * to this instance's LicenseCache. Invalidations this instance published itself have already
+ * been applied, and are skipped.
+ *
+ * The channel is bound by the @EnableBinding(CustomChannels.class) on the
+ * OrganisationChangeHandler.
+ *
+ * @author sadatmalik
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LicenseInvalidationHandler {
+
+    private final LicenseCache licenseCache;
+    private final LicenseInvalidationPublisher publisher;
+
+    @StreamListener("inboundLicenseInvalidations")
+    public void onInvalidation(LicenseInvalidationModel invalidation) {
+        if (publisher.isOwn(invalidation)) {
+            return;
+        }
+        UserContextHolder.wrap(
+                UserContext.withCorrelationId(invalidation.getCorrelationId()),
+                () -> {
+                    log.debug("Received a license cache invalidation for organisation {}",
+                            invalidation.getOrganisationId());
+                    licenseCache.evictRemote(invalidation.getOrganisationId(),
+                            invalidation.getLicenseIds());
+                }).run();
+    }
+}
@@ -1,17 +1,64 @@
 package com.sadatmalik.optima.license.events.handler;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sadatmalik.optima.license.cache.OrganisationCacheRefresher;
 import com.sadatmalik.optima.license.events.CustomChannels;
 import com.sadatmalik.optima.license.events.model.OrganisationChangeModel;
+import com.sadatmalik.optima.license.service.client.OrganisationDiscoveryClient;
+import com.sadatmalik.optima.license.utils.UserContext;
+import com.sadatmalik.optima.license.utils.UserContextHolder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cloud.stream.annotation.EnableBinding;
 import org.springframework.cloud.stream.annotation.StreamListener;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.Payload;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * We inject the CustomChannels interface and use it to process messages.
  *
  * @EnableBinding(CustomChannels.class) - Moves the @EnableBindings out of Application.java
  * and into OrganisationChangeHandler. Instead of using the Sink class, we use CustomChannels
- * as the parameter to pass.
+ * as the parameter to pass. This is the only listener for organisation change events, so
+ * each event is deserialized and applied once.
+ *
+ * The inboundOrgChanges binding runs in batch mode: every poll of the Kafka consumer hands
+ * the listener the whole list of records it returned, as raw JSON. The binding's concurrency
+ * sets how many consumer threads share the topic's partitions.
+ *
+ * Within a batch, only the last SAVE, UPDATE or DELETE of each organisation is applied.
+ * Each of them evicts the organisation from the cache tiers, so the last one leaves the cache
+ * in the same state as applying them all in order would, for one eviction and at most one
+ * refetch. GET events change nothing and are only logged, as are events of unknown actions.
+ *
+ * SAVE, UPDATE and DELETE events are applied to the organisation cache tiers through the
+ * OrganisationCacheRefresher, so cached organisations never outlive the change that made
+ * them stale.
+ *
+ * With the REFRESH update policy, the refetch runs on the refresher's scheduler thread, where
+ * there is no request and so no access token for the KeycloakRestTemplate to propagate. It
+ * goes through the OrganisationDiscoveryClient instead, whose plain RestTemplate needs no
+ * authenticated principal, as the OrganisationCacheWarmer does at startup.
+ *
+ * Each event is handled with a UserContext carrying the event's correlation id, so that log
+ * lines and any refetch it triggers can be traced back to the change in the organisation
+ * service.
+ *
+ * Throughput and lag are exported as organisation.events.received, .applied (the SAVE,
+ * UPDATE and DELETE events applied to the cache after collapsing), .collapsed and .invalid,
+ * the organisation.events.batch.size distribution, and the organisation.events.lag timer,
+ * which measures how long after it was written to Kafka each event is applied.
  *
  * @author sadatmalik
  */
@@ -19,12 +66,111 @@ import org.springframework.cloud.stream.annotation.StreamListener;
 @EnableBinding(CustomChannels.class)
 public class OrganisationChangeHandler {
 
+    private static final Set<String> CACHE_ACTIONS = Set.of("SAVE", "UPDATE", "DELETE");
+
+    private final OrganisationCacheRefresher cacheRefresher;
+    private final OrganisationDiscoveryClient organisationDiscoveryClient;
+    private final ObjectMapper objectMapper;
+
+    private final Counter received;
+    private final Counter applied;
+    private final Counter collapsed;
+    private final Counter invalid;
+    private final DistributionSummary batchSize;
+    private final Timer lag;
+
+    public OrganisationChangeHandler(OrganisationCacheRefresher cacheRefresher,
+                                     OrganisationDiscoveryClient organisationDiscoveryClient,
+                                     ObjectMapper objectMapper,
+                                     MeterRegistry meterRegistry) {
+        this.cacheRefresher = cacheRefresher;
+        this.organisationDiscoveryClient = organisationDiscoveryClient;
+        this.objectMapper = objectMapper;
+        this.received = Counter.builder("organisation.events.received")
+                .description("Organisation change events received")
+                .register(meterRegistry);
+        this.applied = Counter.builder("organisation.events.applied")
+                .description("Organisation change events applied to the cache")
+                .register(meterRegistry);
+        this.collapsed = Counter.builder("organisation.events.collapsed")
+                .description("Organisation change events superseded by a later event " +
+                        "for the same organisation in the same batch")
+                .register(meterRegistry);
+        this.invalid = Counter.builder("organisation.events.invalid")
+                .description("Organisation change events that could not be deserialized")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("organisation.events.batch.size")
+                .description("Organisation change events per consumed batch")
+                .register(meterRegistry);
+        this.lag = Timer.builder("organisation.events.lag")
+                .description("Time from an organisation change event being written to " +
+                        "Kafka to it being applied")
+                .register(meterRegistry);
+    }
+
     @StreamListener("inboundOrgChanges")
-    public void loggerSink(OrganisationChangeModel organisation) {
+    public void loggerSink(@Payload List<byte[]> events,
+                           @Header(name = KafkaHeaders.RECEIVED_TIMESTAMP, required = false)
+                                   List<Long> timestamps) {
+        received.increment(events.size());
+        batchSize.record(events.size());
+
+        Map<String, OrganisationChangeModel> latest = new LinkedHashMap<>();
+        long oldestTimestamp = Long.MAX_VALUE;
+
+        for (int i = 0; i < events.size(); i++) {
+            OrganisationChangeModel organisation = read(events.get(i));
+            if (organisation == null) {
+                continue;
+            }
+            if (timestamps != null && i < timestamps.size()) {
+                oldestTimestamp = Math.min(oldestTimestamp, timestamps.get(i));
+            }
+            if (!CACHE_ACTIONS.contains(String.valueOf(organisation.getAction()))
+                    || organisation.getOrganisationId() == null) {
+                handleEvent(organisation);
+                continue;
+            }
+            // Remove first, so the organisation moves to the position of its last event
+            if (latest.remove(organisation.getOrganisationId()) != null) {
+                collapsed.increment();
+            }
+            latest.put(organisation.getOrganisationId(), organisation);
+        }
+
+        for (OrganisationChangeModel organisation : latest.values()) {
+            handleEvent(organisation);
+            applied.increment();
+        }
+
+        if (oldestTimestamp != Long.MAX_VALUE) {
+            lag.record(Duration.ofMillis(
+                    Math.max(0, System.currentTimeMillis() - oldestTimestamp)));
+        }
+    }
+
+    private OrganisationChangeModel read(byte[] event) {
+        try {
+            return objectMapper.readValue(event, OrganisationChangeModel.class);
+        } catch (IOException ex) {
+            invalid.increment();
+            log.warn("Skipping an organisation change event that could not be read: {}",
+                    ex.getMessage());
+            return null;
+        }
+    }
+
+    private void handleEvent(OrganisationChangeModel organisation) {
+        UserContextHolder.wrap(
+                UserContext.withCorrelationId(organisation.getCorrelationId()),
+                () -> handle(organisation)).run();
+    }
+
+    private void handle(OrganisationChangeModel organisation) {
 
         log.debug("Received a message of type " + organisation.getType());
 
-        switch(organisation.getAction()){
+        switch(String.valueOf(organisation.getAction())){
             case "GET":
                 log.debug("Received a GET event from the organisation service for " +
                         "organisation id {}", organisation.getOrganisationId());
@@ -32,14 +178,18 @@ public class OrganisationChangeHandler {
             case "SAVE":
                 log.debug("Received a SAVE event from the organisation service for " +
                         "organisation id {}", organisation.getOrganisationId());
+                cacheRefresher.organisationSaved(organisation.getOrganisationId());
                 break;
             case "UPDATE":
                 log.debug("Received a UPDATE event from the organisation service for " +
                         "organisation id {}", organisation.getOrganisationId());
+                cacheRefresher.organisationUpdated(organisation.getOrganisationId(),
+                        organisationDiscoveryClient::getOrganisation);
                 break;
             case "DELETE":
                 log.debug("Received a DELETE event from the organisation service for " +
                         "organisation id {}", organisation.getOrganisationId());
+                cacheRefresher.organisationDeleted(organisation.getOrganisationId());
                 break;
             default:
                 log.error("Received an UNKNOWN event from the organisation service of " +
@@ -0,0 +1,44 @@
+package com.sadatmalik.optima.license.events.model;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Tells other services that licenses of an organisation were created, updated or deleted,
+ * so that they can react to the change instead of polling the license endpoints.
+ *
+ * One event describes one write: every license it touched, all of the same organisation.
+ * A null list of license ids stands for all of the organisation's licenses.
+ *
+ * @author sadatmalik
+ */
+@Getter
+@Setter
+@ToString
+public class LicenseChangeModel {
+    private String type;
+    private String action;
+    private String organisationId;
+    private List<String> licenseIds;
+    private String correlationId;
+
+    public LicenseChangeModel(){
+        super();
+    }
+
+    public LicenseChangeModel(String type,
+                              String action,
+                              String organisationId,
+                              List<String> licenseIds,
+                              String correlationId) {
+        super();
+        this.type = type;
+        this.action = action;
+        this.organisationId = organisationId;
+        this.licenseIds = licenseIds;
+        this.correlationId = correlationId;
+    }
+}
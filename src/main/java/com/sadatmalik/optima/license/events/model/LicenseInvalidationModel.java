@@ -0,0 +1,39 @@
+package com.sadatmalik.optima.license.events.model;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Tells the other licensing service instances which cached licenses a write has made stale.
+ *
+ * origin identifies the publishing instance, so that it can ignore its own messages.
+ *
+ * @author sadatmalik
+ */
+@Getter
+@Setter
+@ToString
+public class LicenseInvalidationModel {
+    private String origin;
+    private String organisationId;
+    private List<String> licenseIds;
+    private String correlationId;
+
+    public LicenseInvalidationModel(){
+        super();
+    }
+
+    public LicenseInvalidationModel(String origin,
+                                    String organisationId,
+                                    List<String> licenseIds,
+                                    String correlationId) {
+        super();
+        this.origin = origin;
+        this.organisationId = organisationId;
+        this.licenseIds = licenseIds;
+        this.correlationId = correlationId;
+    }
+}
@@ -0,0 +1,54 @@
+package com.sadatmalik.optima.license.events.source;
+
+import com.sadatmalik.optima.license.events.CustomChannels;
+import com.sadatmalik.optima.license.events.model.LicenseInvalidationModel;
+import com.sadatmalik.optima.license.utils.UserContextHolder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Publishes license cache invalidations on the licenseInvalidations output channel.
+ *
+ * Every licensing service instance subscribes to the same destination without a consumer
+ * group, so each of them receives every invalidation. The message carries this instance's
+ * id, so that it can skip the invalidations it published itself.
+ *
+ * A null list of license ids stands for all of the organisation's licenses.
+ *
+ * If the message cannot be sent, the peers' entries simply live until their time to live
+ * expires.
+ *
+ * @author sadatmalik
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LicenseInvalidationPublisher {
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final CustomChannels channels;
+
+    public void publish(String organisationId, Collection<String> licenseIds) {
+        LicenseInvalidationModel invalidation = new LicenseInvalidationModel(instanceId,
+                organisationId, licenseIds == null ? null : new ArrayList<>(licenseIds),
+                UserContextHolder.getContext().getCorrelationId());
+        try {
+            channels.licenseInvalidations().send(
+                    MessageBuilder.withPayload(invalidation).build());
+        } catch (Exception ex) {
+            log.warn("Unable to publish the license cache invalidation for organisation {}: {}",
+                    organisationId, ex.toString());
+        }
+    }
+
+    public boolean isOwn(LicenseInvalidationModel invalidation) {
+        return instanceId.equals(invalidation.getOrigin());
+    }
+}
@@ -0,0 +1,62 @@
+package com.sadatmalik.optima.license.events.source;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sadatmalik.optima.license.events.model.LicenseChangeModel;
+import com.sadatmalik.optima.license.model.License;
+import com.sadatmalik.optima.license.model.LicenseOutboxEvent;
+import com.sadatmalik.optima.license.repository.LicenseOutboxRepository;
+import com.sadatmalik.optima.license.utils.UserContextHolder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes license change events to the transactional outbox, from which the
+ * LicenseOutboxRelay publishes them to Kafka.
+ *
+ * record() must join the transaction of the license write it describes, so that the event
+ * is committed or rolled back with it, and is never published for a change that did not
+ * happen or lost for one that did.
+ *
+ * @author sadatmalik
+ */
+@Component
+@RequiredArgsConstructor
+public class LicenseOutbox {
+
+    public static final String CREATE = "CREATE";
+    public static final String UPDATE = "UPDATE";
+    public static final String DELETE = "DELETE";
+
+    private final LicenseOutboxRepository outboxRepository;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * @param action CREATE, UPDATE or DELETE
+     * @param organisationId
+     * @param licenseIds the licenses changed, or null for all of the organisation's
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(String action, String organisationId, List<String> licenseIds) {
+        LicenseChangeModel change = new LicenseChangeModel(
+                License.class.getTypeName(), action, organisationId,
+                licenseIds == null ? null : new ArrayList<>(licenseIds),
+                UserContextHolder.getContext().getCorrelationId());
+
+        LicenseOutboxEvent event = new LicenseOutboxEvent();
+        event.setOrganisationId(organisationId);
+        event.setCreatedAt(Instant.now());
+        try {
+            event.setPayload(objectMapper.writeValueAsString(change));
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Unable to serialize " + change, ex);
+        }
+        outboxRepository.save(event);
+    }
+}
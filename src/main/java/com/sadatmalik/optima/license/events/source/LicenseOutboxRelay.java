@@ -0,0 +1,158 @@
+package com.sadatmalik.optima.license.events.source;
+
+import com.sadatmalik.optima.license.config.LicenseConfig;
+import com.sadatmalik.optima.license.model.LicenseOutboxEvent;
+import com.sadatmalik.optima.license.repository.LicenseOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.concurrent.ListenableFuture;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publishes the license change events in the transactional outbox to the license.outbox-topic
+ * Kafka topic, keyed by organisation id, so that every event of an organisation lands on the
+ * same partition.
+ *
+ * Every outboxPollInterval, the relay locks the oldest outboxBatchSize events, hands them all
+ * to the Kafka producer, waits for every acknowledgement and deletes them, in one
+ * transaction, and repeats while it finds full batches. Sending a whole batch before waiting
+ * lets the producer group the records into a few compressed requests, as configured by the
+ * spring.kafka.producer.* properties.
+ *
+ * Events are published at least once. If any send fails, the transaction rolls back and the
+ * whole batch is sent again on the next poll, so a consumer may see an event twice, but never
+ * an event for an organisation ahead of an earlier one:
+ *
+ *   - writes to the same organisation are serialized by its license version row, so their
+ *   events are written to the outbox in commit order
+ *
+ *   - the events are locked and sent in id order, and the relays of other instances wait
+ *   for the lock
+ *
+ *   - the idempotent producer keeps the order of the records of a partition across retries
+ *
+ * Published events are counted under license.outbox.published, and failed batches under
+ * license.outbox.failures.
+ *
+ * @author sadatmalik
+ */
+@Slf4j
+@Component
+public class LicenseOutboxRelay {
+
+    private final LicenseOutboxRepository outboxRepository;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final LicenseConfig config;
+    private final TransactionTemplate transactionTemplate;
+    private final ScheduledExecutorService relay;
+
+    private final Counter published;
+    private final Counter failures;
+
+    public LicenseOutboxRelay(LicenseOutboxRepository outboxRepository,
+                              KafkaTemplate<String, String> kafkaTemplate,
+                              LicenseConfig config,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.config = config;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setIsolationLevel(
+                TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.relay = Executors.newSingleThreadScheduledExecutor();
+
+        this.published = Counter.builder("license.outbox.published")
+                .description("License change events published from the outbox")
+                .register(meterRegistry);
+        this.failures = Counter.builder("license.outbox.failures")
+                .description("Outbox batches that failed to publish and will be retried")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!config.isOutboxRelayEnabled()) {
+            log.info("License outbox relay disabled");
+            return;
+        }
+        long interval = config.getOutboxPollInterval().toMillis();
+        relay.scheduleWithFixedDelay(this::relayEvents, interval, interval,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void relayEvents() {
+        try {
+            while (relayBatch() == config.getOutboxBatchSize()) {
+                // a full batch, there may be more waiting
+            }
+        } catch (Exception ex) {
+            failures.increment();
+            log.warn("Unable to publish license change events, retrying in {}: {}",
+                    config.getOutboxPollInterval(), ex.toString());
+        }
+    }
+
+    private int relayBatch() {
+        Integer relayed = transactionTemplate.execute(status -> {
+            List<LicenseOutboxEvent> events =
+                    outboxRepository.lockOldest(config.getOutboxBatchSize());
+            if (events.isEmpty()) {
+                return 0;
+            }
+
+            List<ListenableFuture<SendResult<String, String>>> sends =
+                    new ArrayList<>(events.size());
+            List<Long> ids = new ArrayList<>(events.size());
+            for (LicenseOutboxEvent event : events) {
+                sends.add(kafkaTemplate.send(config.getOutboxTopic(),
+                        event.getOrganisationId(), event.getPayload()));
+                ids.add(event.getId());
+            }
+            kafkaTemplate.flush();
+            awaitAll(sends);
+
+            outboxRepository.deleteEvents(ids);
+            return events.size();
+        });
+        int count = relayed == null ? 0 : relayed;
+        published.increment(count);
+        return count;
+    }
+
+    private void awaitAll(List<ListenableFuture<SendResult<String, String>>> sends) {
+        long deadline = System.nanoTime() + config.getOutboxSendTimeout().toNanos();
+        try {
+            for (ListenableFuture<SendResult<String, String>> send : sends) {
+                send.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted publishing license events", ex);
+        } catch (ExecutionException | TimeoutException ex) {
+            throw new IllegalStateException("Unable to publish license events", ex);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        relay.shutdownNow();
+    }
+}
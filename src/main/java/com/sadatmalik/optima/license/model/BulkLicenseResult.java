@@ -0,0 +1,33 @@
+package com.sadatmalik.optima.license.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * The outcome of a single item in a bulk create, update or delete request. Bulk responses
+ * return one of these per item, in the order the items were submitted.
+ *
+ * @author sadatmalik
+ */
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkLicenseResult {
+
+    public enum Status {
+        CREATED,
+        UPDATED,
+        DELETED,
+        NOT_FOUND,
+        INVALID
+    }
+
+    private String licenseId;
+    private Status status;
+    private String message;
+}
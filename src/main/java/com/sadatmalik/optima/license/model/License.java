@@ -17,10 +17,19 @@ import javax.persistence.*;
  * The @Entity annotation lets Spring know that this Java POJO is going to be mapping objects
  * that will hold data.
  *
- * The @Table annotation tells Spring/JPA what database table to map.
+ * The @Table annotation tells Spring/JPA what database table to map. The composite index on
+ * (organisation_id, license_id) backs the keyset-paginated and streamed license listings. It
+ * is only schema metadata here; the index itself is created by the Flyway migrations in
+ * db/migration.
  *
  * The @Id annotation identifies the primary key for the database.
  *
+ * The @Version attribute is incremented by Hibernate on every update of a managed license,
+ * and by LicenseRepositoryCustom.patch() on every partial update. Clients send it back in
+ * If-Match (or in the body of a PUT) so that a write based on a stale read is rejected
+ * instead of silently overwriting someone else's change. The column is added by the V4 Flyway
+ * migration in db/migration, which starts existing rows at version 0.
+ *
  * Finally, each one of the columns from the database that will be mapped to individual
  * properties is marked with a @Column attribute. Where the attribute has the same name as the
  * database column, there is no need to add the @Column annotation.
@@ -30,7 +39,9 @@ import javax.persistence.*;
 @Getter
 @Setter
 @Entity
-@Table(name="licenses")
+@Table(name="licenses", indexes = @Index(
+        name = "idx_licenses_organisation_license",
+        columnList = "organisation_id, license_id"))
 @ToString
 public class License extends RepresentationModel<License> {
 
@@ -52,6 +63,11 @@ public class License extends RepresentationModel<License> {
     @Column(name="comment")
     private String comment;
 
+    @Version
+    @Column(name = "version", nullable = false,
+            columnDefinition = "bigint not null default 0")
+    private Long version;
+
     @Transient
     private String organisationName;
 
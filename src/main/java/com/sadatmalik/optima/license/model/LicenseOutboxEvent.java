@@ -0,0 +1,49 @@
+package com.sadatmalik.optima.license.model;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.Instant;
+
+/**
+ * A license change event waiting in the transactional outbox to be published to Kafka.
+ *
+ * The row is written in the same transaction as the license change it describes, so the
+ * event exists if and only if the change committed. The LicenseOutboxRelay publishes the rows
+ * in id order and deletes them once Kafka has acknowledged them.
+ *
+ * organisationId is the Kafka record key, and payload the JSON serialized
+ * LicenseChangeModel.
+ *
+ * The license_outbox table is created by the V5 Flyway migration in db/migration.
+ *
+ * @author sadatmalik
+ */
+@Getter
+@Setter
+@Entity
+@Table(name="license_outbox")
+@ToString
+public class LicenseOutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "organisation_id", nullable = false)
+    private String organisationId;
+
+    @Column(name = "payload", nullable = false, columnDefinition = "mediumtext")
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
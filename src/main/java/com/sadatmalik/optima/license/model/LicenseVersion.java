@@ -0,0 +1,39 @@
+package com.sadatmalik.optima.license.model;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * A per-organisation version of the organisation's licenses.
+ *
+ * The version is incremented in the same transaction as every write to the organisation's
+ * licenses, so it changes exactly when the license list does. LicenseController uses it to
+ * build the ETag of the license list, and can answer a conditional GET from this single
+ * primary key lookup instead of querying the licenses themselves.
+ *
+ * An organisation without a row has never had a license written, and is treated as version 0.
+ *
+ * The license_versions table is created by the V3 Flyway migration in db/migration.
+ *
+ * @author sadatmalik
+ */
+@Getter
+@Setter
+@Entity
+@Table(name="license_versions")
+@ToString
+public class LicenseVersion {
+
+    @Id
+    @Column(name = "organisation_id", nullable = false)
+    private String organisationId;
+
+    @Column(name = "version", nullable = false)
+    private long version;
+}
@@ -11,6 +11,10 @@ import org.springframework.hateoas.RepresentationModel;
  * @RedisHash("organisation") - sets the name of the hash in the Redis server where the
  * organisation data is stored.
  *
+ * The organisation cache now writes organisations in a compact binary format through the
+ * OrganisationBinaryRepository. The @RedisHash mapping is kept only so that entries written
+ * by earlier releases can still be read while they are migrated.
+ *
  * @author sm@creativefusion.net
  */
 @Getter
@@ -0,0 +1,32 @@
+package com.sadatmalik.optima.license.repository;
+
+import com.sadatmalik.optima.license.model.LicenseOutboxEvent;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository for the license change events in the transactional outbox.
+ *
+ * lockOldest() locks the oldest events with SELECT ... FOR UPDATE, so that while one
+ * licensing service instance is relaying them, the relay of any other instance waits for it
+ * rather than publishing later events for the same organisations ahead of them. It must be
+ * called in a READ COMMITTED transaction, so that it locks only the rows it returns and not
+ * the gap after them, which would block new events being written.
+ *
+ * @author sadatmalik
+ */
+public interface LicenseOutboxRepository extends CrudRepository<LicenseOutboxEvent,Long> {
+
+    @Query(value = "select * from license_outbox order by id limit :limit for update",
+            nativeQuery = true)
+    List<LicenseOutboxEvent> lockOldest(@Param("limit") int limit);
+
+    @Modifying
+    @Query("delete from LicenseOutboxEvent e where e.id in :ids")
+    int deleteEvents(@Param("ids") Collection<Long> ids);
+}
@@ -1,20 +1,82 @@
 package com.sadatmalik.optima.license.repository;
 
 import com.sadatmalik.optima.license.model.License;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHint;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * The repository interface, LicenseRepository, is marked with @Repository, which tells Spring
  * that it should treat this interface as a repository and generate a dynamic proxy for it. The
  * dynamic proxy, in this case, provides a set of fully featured, ready-to-use objects.
  *
+ * The keyset (cursor) queries order by license_id and only ever read the rows after the last
+ * license id a client has seen, so every page costs the same regardless of how deep into the
+ * list it is. They are served by the (organisation_id, license_id) index declared on License.
+ *
+ * streamByOrganisationIdOrderByLicenseIdAsc() returns a Stream that must be consumed inside
+ * a transaction and closed afterwards. A fetch size of Integer.MIN_VALUE tells the MySQL
+ * driver to stream rows one at a time rather than buffering the whole result set.
+ *
+ * The bulk delete queries take a whole chunk of license ids at a time, so deleting a chunk
+ * costs one SELECT of the ids that exist and one DELETE, rather than a round trip per license.
+ * Batched inserts live on LicenseRepositoryCustom.
+ *
+ * deleteLicense() and deleteAllLicenses() delete with a single statement. CrudRepository's
+ * delete() and the derived deleteBy queries load every entity first and remove them one by
+ * one, costing a SELECT before the DELETEs.
+ *
+ * findDistinctOrganisationIds() lists the organisations that own licenses, for the startup
+ * cache warm-up. It is answered from the leading column of the same index.
+ *
  * @author sadatmalik
  */
-public interface LicenseRepository extends CrudRepository<License,String> {
+public interface LicenseRepository extends CrudRepository<License,String>,
+        LicenseRepositoryCustom {
 
     List<License> findByOrganisationId(String organisationId);
 
     License findByOrganisationIdAndLicenseId(String organisationId, String licenseId);
+
+    List<License> findByOrganisationIdOrderByLicenseIdAsc(String organisationId,
+                                                          Pageable pageable);
+
+    List<License> findByOrganisationIdAndLicenseIdGreaterThanOrderByLicenseIdAsc(
+            String organisationId, String licenseId, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE,
+            value = "-2147483648"))
+    Stream<License> streamByOrganisationIdOrderByLicenseIdAsc(String organisationId);
+
+    @Query("select l.licenseId from License l " +
+            "where l.organisationId = :organisationId and l.licenseId in :licenseIds")
+    List<String> findLicenseIds(@Param("organisationId") String organisationId,
+                                @Param("licenseIds") Collection<String> licenseIds);
+
+    @Query("select distinct l.organisationId from License l")
+    List<String> findDistinctOrganisationIds(Pageable pageable);
+
+    @Modifying
+    @Query("delete from License l " +
+            "where l.organisationId = :organisationId and l.licenseId = :licenseId")
+    int deleteLicense(@Param("organisationId") String organisationId,
+                      @Param("licenseId") String licenseId);
+
+    @Modifying
+    @Query("delete from License l where l.organisationId = :organisationId")
+    int deleteAllLicenses(@Param("organisationId") String organisationId);
+
+    @Modifying
+    @Query("delete from License l " +
+            "where l.organisationId = :organisationId and l.licenseId in :licenseIds")
+    int deleteLicenses(@Param("organisationId") String organisationId,
+                       @Param("licenseIds") Collection<String> licenseIds);
 }
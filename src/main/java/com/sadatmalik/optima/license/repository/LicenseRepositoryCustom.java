@@ -0,0 +1,71 @@
+package com.sadatmalik.optima.license.repository;
+
+import com.sadatmalik.optima.license.model.License;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Custom license persistence operations used by the bulk license endpoints, the sparse
+ * fieldset queries that select only the columns a client asked for, and the partial update
+ * that writes only the columns a client changed.
+ *
+ * @see LicenseRepositoryCustomImpl
+ *
+ * @author sadatmalik
+ */
+public interface LicenseRepositoryCustom {
+
+    /**
+     * Inserts new licenses, flushing them to the database in JDBC batches.
+     *
+     * @param licenses licenses with their license ids already assigned
+     */
+    void insertAll(Collection<License> licenses);
+
+    /**
+     * Flushes pending changes to managed licenses as JDBC batches, then detaches them so the
+     * persistence context does not grow with the size of a bulk request.
+     */
+    void flushAndClear();
+
+    /**
+     * Selects only the given License attributes of the organisation's licenses, ordered by
+     * license id, without hydrating License entities.
+     *
+     * @param organisationId
+     * @param fields License attribute names. licenseId is always selected.
+     * @param after only licenses with a greater license id, or null for no lower bound
+     * @param limit the maximum number of licenses, or null for all of them
+     * @return one map per license, from attribute name to value, in the order requested
+     */
+    List<Map<String, Object>> findFields(String organisationId, Collection<String> fields,
+                                         String after, Integer limit);
+
+    /**
+     * Selects only the given License attributes of a single license.
+     *
+     * @param organisationId
+     * @param licenseId
+     * @param fields License attribute names. licenseId is always selected.
+     * @return the selected attributes, or null if there is no such license
+     */
+    Map<String, Object> findFields(String organisationId, String licenseId,
+                                   Collection<String> fields);
+
+    /**
+     * Updates only the given License attributes of a single license, and increments its
+     * version, in one UPDATE statement without loading the license first.
+     *
+     * @param organisationId
+     * @param licenseId
+     * @param changes new values by License attribute name
+     * @param expectedVersion the version the license must still have, or null to update
+     *                        whatever its version
+     * @return the number of licenses updated: 0 if there is no such license, or it no longer
+     * has the expected version
+     */
+    int patch(String organisationId, String licenseId, Map<String, Object> changes,
+              Long expectedVersion);
+}
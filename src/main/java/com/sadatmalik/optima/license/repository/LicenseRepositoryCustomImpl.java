@@ -0,0 +1,164 @@
+package com.sadatmalik.optima.license.repository;
+
+import com.sadatmalik.optima.license.config.LicenseConfig;
+import com.sadatmalik.optima.license.model.License;
+import lombok.RequiredArgsConstructor;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.TupleElement;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Spring Data picks this class up as the implementation of LicenseRepositoryCustom and mixes
+ * it into the LicenseRepository proxy.
+ *
+ * save() on a license with an assigned id goes through JPA merge, which runs a SELECT before
+ * every INSERT. insertAll() calls persist() instead, and flushes and clears the persistence
+ * context every license.bulk-batch-size licenses. With hibernate.jdbc.batch_size set to the
+ * same value, each flush is sent to MySQL as a single JDBC batch, which the driver rewrites
+ * into multi-row INSERT statements when rewriteBatchedStatements is enabled.
+ *
+ * insertAll() and flushAndClear() must be called inside a transaction.
+ *
+ * findFields() builds a Criteria tuple query that selects only the requested attributes, so
+ * MySQL returns, and Hibernate reads, just those columns. Spring Data interface and DTO
+ * projections fix the selected columns at compile time, whereas a client can ask for any
+ * combination, so the query is built per request instead. The attribute names must already
+ * have been checked against the persistent License attributes by the caller.
+ *
+ * patch() builds a Criteria bulk UPDATE in the same way, setting only the changed attributes
+ * and version = version + 1, with the expected version, if any, in the WHERE clause. It
+ * bypasses the persistence context, so it must run in a transaction that has not loaded the
+ * license.
+ *
+ * @author sadatmalik
+ */
+@RequiredArgsConstructor
+public class LicenseRepositoryCustomImpl implements LicenseRepositoryCustom {
+
+    private static final String LICENSE_ID = "licenseId";
+    private static final String ORGANISATION_ID = "organisationId";
+    private static final String VERSION = "version";
+
+    private final EntityManager entityManager;
+    private final LicenseConfig licenseConfig;
+
+    @Override
+    public void insertAll(Collection<License> licenses) {
+        int count = 0;
+        for (License license : licenses) {
+            entityManager.persist(license);
+            if (++count % licenseConfig.getBulkBatchSize() == 0) {
+                flushAndClear();
+            }
+        }
+        flushAndClear();
+    }
+
+    @Override
+    public void flushAndClear() {
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Override
+    public List<Map<String, Object>> findFields(String organisationId,
+                                                Collection<String> fields,
+                                                String after, Integer limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<License> license = query.from(License.class);
+
+        Predicate predicate = cb.equal(license.get(ORGANISATION_ID), organisationId);
+        if (after != null) {
+            predicate = cb.and(predicate, cb.greaterThan(license.get(LICENSE_ID), after));
+        }
+        query.multiselect(selections(license, fields))
+                .where(predicate)
+                .orderBy(cb.asc(license.get(LICENSE_ID)));
+
+        TypedQuery<Tuple> typedQuery = entityManager.createQuery(query);
+        if (limit != null) {
+            typedQuery.setMaxResults(limit);
+        }
+
+        List<Tuple> tuples = typedQuery.getResultList();
+        List<Map<String, Object>> rows = new ArrayList<>(tuples.size());
+        for (Tuple tuple : tuples) {
+            rows.add(toMap(tuple));
+        }
+        return rows;
+    }
+
+    @Override
+    public Map<String, Object> findFields(String organisationId, String licenseId,
+                                          Collection<String> fields) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<License> license = query.from(License.class);
+
+        query.multiselect(selections(license, fields))
+                .where(cb.equal(license.get(ORGANISATION_ID), organisationId),
+                        cb.equal(license.get(LICENSE_ID), licenseId));
+
+        List<Tuple> tuples = entityManager.createQuery(query).getResultList();
+        return tuples.isEmpty() ? null : toMap(tuples.get(0));
+    }
+
+    @Override
+    public int patch(String organisationId, String licenseId, Map<String, Object> changes,
+                     Long expectedVersion) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<License> update = cb.createCriteriaUpdate(License.class);
+        Root<License> license = update.from(License.class);
+
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            update.set(license.get(change.getKey()), change.getValue());
+        }
+        update.set(license.<Long>get(VERSION), cb.sum(license.<Long>get(VERSION), 1L));
+
+        Predicate predicate = cb.and(cb.equal(license.get(ORGANISATION_ID), organisationId),
+                cb.equal(license.get(LICENSE_ID), licenseId));
+        if (expectedVersion != null) {
+            predicate = cb.and(predicate, cb.equal(license.get(VERSION), expectedVersion));
+        }
+        update.where(predicate);
+
+        return entityManager.createQuery(update).executeUpdate();
+    }
+
+    private static List<Selection<?>> selections(Root<License> license,
+                                                 Collection<String> fields) {
+        Set<String> attributes = new LinkedHashSet<>();
+        attributes.add(LICENSE_ID);
+        attributes.addAll(fields);
+
+        List<Selection<?>> selections = new ArrayList<>(attributes.size());
+        for (String attribute : attributes) {
+            selections.add(license.get(attribute).alias(attribute));
+        }
+        return selections;
+    }
+
+    private static Map<String, Object> toMap(Tuple tuple) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (TupleElement<?> element : tuple.getElements()) {
+            row.put(element.getAlias(), tuple.get(element));
+        }
+        return row;
+    }
+}
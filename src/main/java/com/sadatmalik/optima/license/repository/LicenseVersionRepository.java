@@ -0,0 +1,26 @@
+package com.sadatmalik.optima.license.repository;
+
+import com.sadatmalik.optima.license.model.LicenseVersion;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * Repository for the per-organisation LicenseVersion.
+ *
+ * increment() creates the organisation's row at version 1, or increments the existing one,
+ * in a single MySQL upsert statement. The row lock it takes is held until the surrounding
+ * license write commits, so concurrent writes to the same organisation each get their own
+ * version. It must be called inside that write's transaction.
+ *
+ * @author sadatmalik
+ */
+public interface LicenseVersionRepository extends CrudRepository<LicenseVersion,String> {
+
+    @Modifying
+    @Query(value = "insert into license_versions (organisation_id, version) " +
+            "values (:organisationId, 1) " +
+            "on duplicate key update version = version + 1", nativeQuery = true)
+    int increment(@Param("organisationId") String organisationId);
+}
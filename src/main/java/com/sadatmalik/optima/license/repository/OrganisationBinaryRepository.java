@@ -0,0 +1,179 @@
+package com.sadatmalik.optima.license.repository;
+
+import com.sadatmalik.optima.license.model.Organisation;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stores organisations in Redis as plain string keys holding the compact OrganisationCodec
+ * encoding, each written with SET ... EX so that it expires on its own.
+ *
+ * Compared with the @RedisHash("organisation") entries read by OrganisationRedisRepository,
+ * a write is a single SET rather than an HMSET of every field plus an SADD to the
+ * "organisation" index set, nothing is kept forever, and there is no index set to grow
+ * without bound. A lookup is a single GET, and a bulk lookup a single MGET.
+ *
+ * Multi-key writes are pipelined: saveAll() and markAllUnknown() queue one SET ... EX per
+ * key on the connection and read every reply back in a single round trip, rather than one
+ * round trip per organisation.
+ *
+ * The negative entries recorded for organisations the organisation service does not know
+ * about live here too, as expiring one-byte markers.
+ *
+ * Keys and values go through the organisationRedisTemplate, which uses plain string keys and
+ * raw byte values rather than JDK serialization.
+ *
+ * @author sadatmalik
+ */
+@Repository
+public class OrganisationBinaryRepository {
+
+    static final String KEY_PREFIX = "organisation:v2:";
+    static final String UNKNOWN_KEY_PREFIX = "organisation:unknown:";
+
+    private static final byte[] UNKNOWN_MARKER = {1};
+
+    private final RedisTemplate<String, byte[]> redisTemplate;
+
+    public OrganisationBinaryRepository(
+            @Qualifier("organisationRedisTemplate") RedisTemplate<String, byte[]> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    public Organisation findById(String organisationId) {
+        return OrganisationCodec.decode(
+                redisTemplate.opsForValue().get(KEY_PREFIX + organisationId));
+    }
+
+    /**
+     * @param organisationIds
+     * @return the organisations found, keyed by organisation id. Ids that are not cached are
+     * absent from the map.
+     */
+    public Map<String, Organisation> findAllById(Collection<String> organisationIds) {
+        List<String> ids = new ArrayList<>(organisationIds);
+        Map<String, Organisation> organisations = new HashMap<>();
+        if (ids.isEmpty()) {
+            return organisations;
+        }
+
+        List<byte[]> values = redisTemplate.opsForValue().multiGet(keys(KEY_PREFIX, ids));
+        for (int i = 0; values != null && i < values.size(); i++) {
+            Organisation organisation = OrganisationCodec.decode(values.get(i));
+            if (organisation != null) {
+                organisations.put(ids.get(i), organisation);
+            }
+        }
+        return organisations;
+    }
+
+    public void save(Organisation organisation, Duration timeToLive) {
+        redisTemplate.opsForValue().set(KEY_PREFIX + organisation.getId(),
+                OrganisationCodec.encode(organisation), timeToLive);
+    }
+
+    /**
+     * Writes every organisation in a single pipelined round trip.
+     *
+     * @param organisations
+     * @param timeToLive
+     */
+    public void saveAll(Collection<Organisation> organisations, Duration timeToLive) {
+        if (organisations.isEmpty()) {
+            return;
+        }
+        Expiration expiration = Expiration.from(timeToLive);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Organisation organisation : organisations) {
+                connection.stringCommands().set(key(KEY_PREFIX + organisation.getId()),
+                        OrganisationCodec.encode(organisation), expiration,
+                        RedisStringCommands.SetOption.upsert());
+            }
+            return null;
+        });
+    }
+
+    public void deleteById(String organisationId) {
+        redisTemplate.delete(List.of(KEY_PREFIX + organisationId,
+                UNKNOWN_KEY_PREFIX + organisationId));
+    }
+
+    public boolean isUnknown(String organisationId) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(UNKNOWN_KEY_PREFIX + organisationId));
+    }
+
+    /**
+     * @param organisationIds
+     * @return the ids that have a negative entry
+     */
+    public Set<String> findUnknown(List<String> organisationIds) {
+        Set<String> unknown = new HashSet<>();
+        if (organisationIds.isEmpty()) {
+            return unknown;
+        }
+
+        List<byte[]> markers = redisTemplate.opsForValue()
+                .multiGet(keys(UNKNOWN_KEY_PREFIX, organisationIds));
+        for (int i = 0; markers != null && i < markers.size(); i++) {
+            if (markers.get(i) != null) {
+                unknown.add(organisationIds.get(i));
+            }
+        }
+        return unknown;
+    }
+
+    public void markUnknown(String organisationId, Duration timeToLive) {
+        redisTemplate.opsForValue().set(UNKNOWN_KEY_PREFIX + organisationId,
+                UNKNOWN_MARKER, timeToLive);
+    }
+
+    /**
+     * Records a negative entry for every organisation in a single pipelined round trip.
+     *
+     * @param organisationIds
+     * @param timeToLive
+     */
+    public void markAllUnknown(Collection<String> organisationIds, Duration timeToLive) {
+        if (organisationIds.isEmpty()) {
+            return;
+        }
+        Expiration expiration = Expiration.from(timeToLive);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String organisationId : organisationIds) {
+                connection.stringCommands().set(key(UNKNOWN_KEY_PREFIX + organisationId),
+                        UNKNOWN_MARKER, expiration, RedisStringCommands.SetOption.upsert());
+            }
+            return null;
+        });
+    }
+
+    public void forgetUnknown(String organisationId) {
+        redisTemplate.delete(UNKNOWN_KEY_PREFIX + organisationId);
+    }
+
+    private static byte[] key(String key) {
+        return RedisSerializer.string().serialize(key);
+    }
+
+    private static List<String> keys(String prefix, List<String> organisationIds) {
+        List<String> keys = new ArrayList<>(organisationIds.size());
+        for (String organisationId : organisationIds) {
+            keys.add(prefix + organisationId);
+        }
+        return keys;
+    }
+}
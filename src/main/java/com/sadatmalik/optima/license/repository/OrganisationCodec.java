@@ -0,0 +1,127 @@
+package com.sadatmalik.optima.license.repository;
+
+import com.sadatmalik.optima.license.model.Organisation;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The compact binary format used for organisations in the Redis cache.
+ *
+ * An entry is a format version byte followed by the id, name, contactName, contactEmail and
+ * contactPhone fields, in that order. Each field is written as a varint of its UTF-8 length
+ * plus one, with 0 standing for null, followed by its UTF-8 bytes. There are no field names,
+ * type hints or class descriptors, so a typical organisation encodes to little more than the
+ * length of its values - a fraction of a JDK-serialized object or a @RedisHash hash.
+ *
+ * Adding a field means bumping FORMAT_VERSION and teaching decode() to read both versions.
+ *
+ * An entry that is truncated, has a length running past its end or has bytes left over after
+ * the last field decodes to null, so a corrupt entry is treated as a cache miss rather than
+ * failing the lookup.
+ *
+ * @author sadatmalik
+ */
+public final class OrganisationCodec {
+
+    static final byte FORMAT_VERSION = 1;
+
+    private OrganisationCodec() {
+    }
+
+    public static byte[] encode(Organisation organisation) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+        out.write(FORMAT_VERSION);
+        writeString(out, organisation.getId());
+        writeString(out, organisation.getName());
+        writeString(out, organisation.getContactName());
+        writeString(out, organisation.getContactEmail());
+        writeString(out, organisation.getContactPhone());
+        return out.toByteArray();
+    }
+
+    /**
+     * @param bytes an encoded organisation
+     * @return the organisation, or null if bytes is null, corrupt or in a format we cannot
+     * read
+     */
+    public static Organisation decode(byte[] bytes) {
+        if (bytes == null || bytes.length == 0 || bytes[0] != FORMAT_VERSION) {
+            return null;
+        }
+        try {
+            Reader in = new Reader(bytes);
+            Organisation organisation = new Organisation();
+            organisation.setId(in.readString());
+            organisation.setName(in.readString());
+            organisation.setContactName(in.readString());
+            organisation.setContactEmail(in.readString());
+            organisation.setContactPhone(in.readString());
+            return in.isAtEnd() ? organisation : null;
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        if (value == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, utf8.length + 1);
+        out.write(utf8, 0, utf8.length);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static class Reader {
+        private final byte[] bytes;
+        private int position = 1;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        String readString() {
+            int length = readVarint();
+            if (length == 0) {
+                return null;
+            }
+            if (length - 1 > bytes.length - position) {
+                throw new IllegalArgumentException("Organisation entry is truncated");
+            }
+            String value = new String(bytes, position, length - 1, StandardCharsets.UTF_8);
+            position += length - 1;
+            return value;
+        }
+
+        int readVarint() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (position == bytes.length || shift > 28) {
+                    throw new IllegalArgumentException("Organisation entry is corrupt");
+                }
+                b = bytes[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            if (value < 0) {
+                throw new IllegalArgumentException("Organisation entry is corrupt");
+            }
+            return value;
+        }
+
+        boolean isAtEnd() {
+            return position == bytes.length;
+        }
+    }
+}
@@ -8,8 +8,12 @@ import org.springframework.stereotype.Repository;
  * Using Spring Data to access our Redis store, we need to define a repository class that will
  * be injected into any of service classes that need to access Redis.
  *
+ * Bulk reads that Spring Data cannot derive, such as the pipelined multi-get, are declared on
+ * OrganisationRedisRepositoryCustom.
+ *
  * @author sadatmalik
  */
 @Repository
-public interface OrganisationRedisRepository extends CrudRepository<Organisation,String> {
+public interface OrganisationRedisRepository extends CrudRepository<Organisation,String>,
+        OrganisationRedisRepositoryCustom {
 }
\ No newline at end of file
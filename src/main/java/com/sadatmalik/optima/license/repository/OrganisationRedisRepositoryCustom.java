@@ -0,0 +1,25 @@
+package com.sadatmalik.optima.license.repository;
+
+import com.sadatmalik.optima.license.model.Organisation;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Custom operations on the Redis organisation store that Spring Data cannot derive for us.
+ *
+ * @see OrganisationRedisRepositoryCustomImpl
+ *
+ * @author sadatmalik
+ */
+public interface OrganisationRedisRepositoryCustom {
+
+    /**
+     * Reads every requested organisation from Redis in a single pipelined round trip.
+     *
+     * @param organisationIds
+     * @return the organisations found, keyed by organisation id. Ids that are not cached are
+     * absent from the map.
+     */
+    Map<String, Organisation> findAllByIdPipelined(Collection<String> organisationIds);
+}
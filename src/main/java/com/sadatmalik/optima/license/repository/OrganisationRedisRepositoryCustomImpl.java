@@ -0,0 +1,100 @@
+package com.sadatmalik.optima.license.repository;
+
+import com.sadatmalik.optima.license.model.Organisation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spring Data picks this class up as the implementation of OrganisationRedisRepositoryCustom
+ * and mixes it into the OrganisationRedisRepository proxy.
+ *
+ * findById() on the repository costs one round trip per organisation. Here we open a pipeline
+ * on the underlying connection, queue an HGETALL for each organisation hash written by
+ * @RedisHash("organisation"), and read all the replies back at once.
+ *
+ * The replies are read straight off the connection as raw bytes, so that the JDK serializers
+ * configured on the RedisTemplate are never applied to them.
+ *
+ * @author sadatmalik
+ */
+@RequiredArgsConstructor
+public class OrganisationRedisRepositoryCustomImpl implements OrganisationRedisRepositoryCustom {
+
+    private static final String KEYSPACE = "organisation:";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    @Override
+    public Map<String, Organisation> findAllByIdPipelined(Collection<String> organisationIds) {
+        List<String> ids = new ArrayList<>(organisationIds);
+        Map<String, Organisation> organisations = new HashMap<>();
+        if (ids.isEmpty()) {
+            return organisations;
+        }
+
+        List<Object> replies = redisTemplate.execute((RedisCallback<List<Object>>) connection -> {
+            connection.openPipeline();
+            for (String id : ids) {
+                connection.hashCommands().hGetAll(bytes(KEYSPACE + id));
+            }
+            return connection.closePipeline();
+        });
+
+        for (int i = 0; replies != null && i < replies.size(); i++) {
+            Object reply = replies.get(i);
+            if (reply instanceof Map && !((Map<?, ?>) reply).isEmpty()) {
+                organisations.put(ids.get(i), toOrganisation((Map<?, ?>) reply));
+            }
+        }
+        return organisations;
+    }
+
+    /**
+     * Maps the fields written by the Spring Data mapping converter back onto an Organisation.
+     * Type hints and HATEOAS link fields are ignored.
+     */
+    private Organisation toOrganisation(Map<?, ?> hash) {
+        Organisation organisation = new Organisation();
+        for (Map.Entry<?, ?> field : hash.entrySet()) {
+            String value = string(field.getValue());
+            switch (string(field.getKey())) {
+                case "id":
+                    organisation.setId(value);
+                    break;
+                case "name":
+                    organisation.setName(value);
+                    break;
+                case "contactName":
+                    organisation.setContactName(value);
+                    break;
+                case "contactEmail":
+                    organisation.setContactEmail(value);
+                    break;
+                case "contactPhone":
+                    organisation.setContactPhone(value);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return organisation;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(Object value) {
+        return value instanceof byte[]
+                ? new String((byte[]) value, StandardCharsets.UTF_8)
+                : String.valueOf(value);
+    }
+}
@@ -0,0 +1,17 @@
+package com.sadatmalik.optima.license.service;
+
+/**
+ * Thrown when a request cannot be served because of what the client sent, for example a
+ * sparse fieldset naming a field that is not one of the selectable License columns, or a
+ * partial update of a field that cannot be changed, or a bulk request with more than
+ * license.bulk-max-items items. The message is already localised for the
+ * request, and the controller answers it with 400 Bad Request.
+ *
+ * @author sadatmalik
+ */
+public class InvalidLicenseRequestException extends IllegalArgumentException {
+
+    public InvalidLicenseRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,97 @@
+package com.sadatmalik.optima.license.service;
+
+import com.sadatmalik.optima.license.config.LicenseConfig;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+
+/**
+ * Generates the license id of every new license, using the license.id-strategy:
+ *
+ *   - RANDOM: a random (version 4) UUID, as the service has always assigned.
+ *
+ *   - UUID7: a version 7 UUID. The first 48 bits are the creation time in milliseconds, so
+ *   ids created later also sort later as strings, in the same 36 character format as
+ *   RANDOM.
+ *
+ *   - ULID: the same 48 bit timestamp followed by 80 random bits, written as 26 Crockford
+ *   base32 characters, which also sort in creation order.
+ *
+ * license_id is the clustered primary key of the licenses table in InnoDB, and is repeated
+ * in every secondary index entry. Random ids land on a random page of the index, so as the
+ * table grows every insert is likely to split a page or read one back into the buffer pool.
+ * Time-ordered ids are appended at the right-hand end of the index instead, which keeps the
+ * pages full and the insert path in memory. The shorter ULID also makes each secondary
+ * index entry ten bytes smaller.
+ *
+ * Ids stay strings, so licenses created with any strategy, or before one was configured,
+ * coexist in the same table and are accepted by the same endpoints.
+ *
+ * @author sadatmalik
+ */
+@Component
+@RequiredArgsConstructor
+public class LicenseIdGenerator {
+
+    private static final char[] CROCKFORD_BASE32 =
+            "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    private final SecureRandom random = new SecureRandom();
+
+    private final LicenseConfig licenseConfig;
+
+    public String nextId() {
+        switch (licenseConfig.getIdStrategy()) {
+            case UUID7:
+                return uuid7();
+            case ULID:
+                return ulid();
+            default:
+                return UUID.randomUUID().toString();
+        }
+    }
+
+    /**
+     * 48 bits of Unix time in milliseconds, the version, 12 random bits, the variant and 62
+     * random bits.
+     */
+    private String uuid7() {
+        long mostSigBits = (System.currentTimeMillis() << 16)
+                | 0x7000L
+                | (random.nextInt() & 0xfffL);
+        long leastSigBits = (random.nextLong() & 0x3fffffffffffffffL)
+                | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits).toString();
+    }
+
+    /**
+     * 10 characters of Unix time in milliseconds followed by 16 characters of randomness,
+     * 5 bits per character.
+     */
+    private String ulid() {
+        char[] chars = new char[26];
+
+        long time = System.currentTimeMillis();
+        for (int i = 9; i >= 0; i--) {
+            chars[i] = CROCKFORD_BASE32[(int) (time & 31)];
+            time >>>= 5;
+        }
+
+        byte[] randomness = new byte[10];
+        random.nextBytes(randomness);
+        int buffer = 0;
+        int bits = 0;
+        int index = 10;
+        for (byte b : randomness) {
+            buffer = (buffer << 8) | (b & 0xff);
+            bits += 8;
+            while (bits >= 5) {
+                bits -= 5;
+                chars[index++] = CROCKFORD_BASE32[(buffer >>> bits) & 31];
+            }
+        }
+        return new String(chars);
+    }
+}
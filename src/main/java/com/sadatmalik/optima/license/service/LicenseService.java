@@ -1,24 +1,50 @@
 package com.sadatmalik.optima.license.service;
 
+import com.sadatmalik.optima.license.cache.LicenseCache;
+import com.sadatmalik.optima.license.cache.MissingLicenseCache;
+import com.sadatmalik.optima.license.cache.OrganisationCache;
+import com.sadatmalik.optima.license.config.LicenseConfig;
 import com.sadatmalik.optima.license.config.ServiceConfig;
+import com.sadatmalik.optima.license.events.source.LicenseOutbox;
+import com.sadatmalik.optima.license.model.BulkLicenseResult;
 import com.sadatmalik.optima.license.model.License;
 import com.sadatmalik.optima.license.model.Organisation;
+import com.sadatmalik.optima.license.model.LicenseVersion;
 import com.sadatmalik.optima.license.repository.LicenseRepository;
+import com.sadatmalik.optima.license.repository.LicenseVersionRepository;
 import com.sadatmalik.optima.license.service.client.OrganisationDiscoveryClient;
 import com.sadatmalik.optima.license.service.client.OrganisationFeignClient;
+import com.sadatmalik.optima.license.service.client.OrganisationRequestCoalescer;
+import com.sadatmalik.optima.license.service.client.OrganisationRequestHedger;
 import com.sadatmalik.optima.license.service.client.OrganisationRestTemplateClient;
 import com.sadatmalik.optima.license.utils.UserContextHolder;
 import io.github.resilience4j.bulkhead.annotation.Bulkhead;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import io.github.resilience4j.ratelimiter.annotation.RateLimiter;
 import io.github.resilience4j.retry.annotation.Retry;
+import io.github.resilience4j.timelimiter.annotation.TimeLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.MessageSource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * The service class that we’ll use to develop the logic of the different services we are going
@@ -37,13 +63,42 @@ import java.util.concurrent.TimeoutException;
 @RequiredArgsConstructor
 public class LicenseService {
 
+    /**
+     * The persistent License attributes a client can ask for with fields=.
+     */
+    static final List<String> SELECTABLE_FIELDS = List.of("licenseId", "description",
+            "organisationId", "productName", "licenseType", "comment", "version");
+
+    /**
+     * The License attributes a client can change with a partial update. productName and
+     * licenseType cannot be cleared.
+     */
+    static final List<String> PATCHABLE_FIELDS = List.of("description", "productName",
+            "licenseType", "comment");
+
+    /**
+     * The license id of the placeholder license returned by the fallback methods.
+     */
+    static final String FALLBACK_LICENSE_ID = "0000000-00-00000";
+
     private final MessageSource messages;
     private final LicenseRepository licenseRepository;
+    private final LicenseVersionRepository licenseVersionRepository;
+    private final LicenseIdGenerator licenseIdGenerator;
+    private final LicenseOutbox licenseOutbox;
+    private final MeterRegistry meterRegistry;
     private final ServiceConfig config;
+    private final LicenseConfig licenseConfig;
+    private final EntityManager entityManager;
 
     private final OrganisationFeignClient organisationFeignClient;
     private final OrganisationRestTemplateClient organisationRestClient;
     private final OrganisationDiscoveryClient organisationDiscoveryClient;
+    private final OrganisationRequestCoalescer organisationRequestCoalescer;
+    private final OrganisationRequestHedger organisationRequestHedger;
+    private final OrganisationCache organisationCache;
+    private final MissingLicenseCache missingLicenseCache;
+    private final LicenseCache licenseCache;
 
     /**
      * Resilience4j and Spring Cloud use @CircuitBreaker to mark Java class methods managed
@@ -79,7 +134,13 @@ public class LicenseService {
      * at a time). With the rate limiter, we can limit the number of total calls in a given
      * timeframe (for example, allow X number of calls every Y seconds).
      *
+     * The minimumVersion is the organisation's license version the caller has already read,
+     * for example to build the ETag of the list. A cached list older than that version is
+     * reloaded, so the list returned is never older than the version the caller sends with
+     * it. Pass 0 when no version was read.
+     *
      * @param organisationId
+     * @param minimumVersion
      * @return
      */
     @CircuitBreaker(name = "licenseService",
@@ -91,12 +152,174 @@ public class LicenseService {
     @Bulkhead(name= "bulkheadLicenseService",
             //type = Bulkhead.Type.THREADPOOL,
             fallbackMethod= "buildFallbackLicenseList")
-    public List<License> getLicensesByOrganisation(String organisationId)
+    public List<License> getLicensesByOrganisation(String organisationId, long minimumVersion)
             throws TimeoutException {
         log.debug("getLicensesByOrganization Correlation id: {}",
                 UserContextHolder.getContext().getCorrelationId());
         randomlyRunLong();
-        return licenseRepository.findByOrganisationId(organisationId);
+        return findLicenses(organisationId, minimumVersion);
+    }
+
+    /**
+     * The asynchronous version of getLicensesByOrganisation().
+     *
+     * With type = Bulkhead.Type.THREADPOOL, Resilience4j runs the method on the dedicated
+     * bulkheadLicenseService thread pool instead of the servlet thread, and rejects calls
+     * once that pool and its queue are full. The @TimeLimiter then bounds how long the
+     * caller waits for the returned CompletableFuture, so a slow query is abandoned after
+     * resilience4j.timelimiter.instances.licenseService.timeoutDuration rather than holding
+     * on to a Tomcat worker thread.
+     *
+     * Thread-pool bulkheads and time limiters only work with methods that return a
+     * CompletionStage, which is why this is a separate method rather than a flag.
+     *
+     * @param organisationId
+     * @return
+     * @throws TimeoutException
+     */
+    @CircuitBreaker(name = "licenseService",
+            fallbackMethod = "buildFallbackLicenseListAsync")
+    @TimeLimiter(name = "licenseService",
+            fallbackMethod = "buildFallbackLicenseListAsync")
+    @Bulkhead(name = "bulkheadLicenseService",
+            type = Bulkhead.Type.THREADPOOL,
+            fallbackMethod = "buildFallbackLicenseListAsync")
+    public CompletableFuture<List<License>> getLicensesByOrganisationAsync(
+            String organisationId) throws TimeoutException {
+        log.debug("getLicensesByOrganisationAsync Correlation id: {}",
+                UserContextHolder.getContext().getCorrelationId());
+        randomlyRunLong();
+        return CompletableFuture.completedFuture(findLicenses(organisationId, 0));
+    }
+
+    /**
+     * The asynchronous version of getLicense(organisationId, licenseId, clientType). The
+     * license lookup and the call to the organisation service run on the dedicated
+     * bulkheadOrganisationService thread pool, bounded by the organizationService time
+     * limiter and circuit breaker.
+     *
+     * @param organisationId
+     * @param licenseId
+     * @param clientType
+     * @return
+     */
+    @CircuitBreaker(name = "organizationService")
+    @TimeLimiter(name = "organizationService")
+    @Bulkhead(name = "bulkheadOrganisationService",
+            type = Bulkhead.Type.THREADPOOL)
+    public CompletableFuture<License> getLicenseAsync(String organisationId,
+                                                      String licenseId,
+                                                      String clientType) {
+        return CompletableFuture.completedFuture(
+                getLicense(organisationId, licenseId, clientType));
+    }
+
+    /**
+     * Keyset pagination over an organisation's licenses, ordered by license id.
+     *
+     * Instead of an offset, the client passes the last license id it has seen as the cursor
+     * and we read only the rows after it, so each page is a bounded index range scan no
+     * matter how large the organisation is. The limit is capped at license.max-page-size.
+     *
+     * @param organisationId
+     * @param after the last license id of the previous page, or null for the first page
+     * @param limit the maximum number of licenses to return
+     * @return
+     */
+    public List<License> getLicensesByOrganisation(String organisationId, String after,
+                                                   int limit) {
+        Pageable page = PageRequest.of(0, pageSize(limit));
+
+        if (after == null) {
+            return licenseRepository
+                    .findByOrganisationIdOrderByLicenseIdAsc(organisationId, page);
+        }
+        return licenseRepository
+                .findByOrganisationIdAndLicenseIdGreaterThanOrderByLicenseIdAsc(
+                        organisationId, after, page);
+    }
+
+    /**
+     * The number of licenses a page actually holds for the requested limit, which is capped
+     * at license.max-page-size. A page this full may have more licenses after it.
+     *
+     * @param limit the requested page size
+     * @return
+     */
+    public int pageSize(int limit) {
+        return Math.max(1, Math.min(limit, licenseConfig.getMaxPageSize()));
+    }
+
+    /**
+     * Sparse fieldset version of getLicensesByOrganisation(). Only the requested License
+     * columns, plus the license id, are selected and returned, one map per license, ordered
+     * by license id. With a limit, after and limit page through the licenses exactly like the
+     * keyset-paginated listing.
+     *
+     * @param organisationId
+     * @param fields the License attributes to return
+     * @param after the last license id of the previous page, or null
+     * @param limit the maximum number of licenses to return, or null for all of them
+     * @param locale the language of the error message if a field cannot be selected
+     * @return
+     */
+    public List<Map<String, Object>> getLicenseFields(String organisationId,
+                                                      List<String> fields,
+                                                      String after, Integer limit,
+                                                      Locale locale) {
+        checkFields(fields, locale);
+        Integer pageSize = limit == null ? null : pageSize(limit);
+        return licenseRepository.findFields(organisationId, fields, after, pageSize);
+    }
+
+    /**
+     * Sparse fieldset version of getLicense(licenseId, organisationId).
+     *
+     * @param organisationId
+     * @param licenseId
+     * @param fields the License attributes to return
+     * @param locale the language of the error message if a field cannot be selected
+     * @return
+     */
+    public Map<String, Object> getLicenseFields(String organisationId, String licenseId,
+                                                List<String> fields, Locale locale) {
+        checkFields(fields, locale);
+        Map<String, Object> license = missingLicenseCache.isMissing(organisationId, licenseId)
+                ? null
+                : licenseRepository.findFields(organisationId, licenseId, fields);
+        if (license == null) {
+            missingLicenseCache.markMissing(organisationId, licenseId);
+            throw new IllegalArgumentException(String.format(
+                    messages.getMessage("license.search.error.message",
+                            null, null), licenseId, organisationId));
+        }
+        if (license.containsKey("comment")) {
+            license.put("comment", config.getProperty());
+        }
+        return license;
+    }
+
+    /**
+     * Hands each of the organisation's licenses to the consumer as it is read from the
+     * database. Every license is detached from the persistence context once it has been
+     * consumed, so memory use stays constant however many licenses the organisation has.
+     *
+     * The underlying Stream holds an open cursor, which is why this method has to run inside
+     * a read-only transaction.
+     *
+     * @param organisationId
+     * @param consumer
+     */
+    @Transactional(readOnly = true)
+    public void streamLicensesByOrganisation(String organisationId,
+                                             Consumer<License> consumer) {
+        try (Stream<License> licenses = licenseRepository
+                .streamByOrganisationIdOrderByLicenseIdAsc(organisationId)) {
+            licenses.forEach(license -> {
+                consumer.accept(license);
+                entityManager.detach(license);
+            });
+        }
     }
 
     /**
@@ -110,15 +333,43 @@ public class LicenseService {
      * @return
      */
     private List<License> buildFallbackLicenseList(String organisationId, Throwable t){
+        Counter.builder("license.fallbacks")
+                .description("License lookups answered by the fallback list")
+                .tag("exception", t.getClass().getSimpleName())
+                .register(meterRegistry)
+                .increment();
         List<License> fallbackList = new ArrayList<>();
         License license = new License();
-        license.setLicenseId("0000000-00-00000");
+        license.setLicenseId(FALLBACK_LICENSE_ID);
         license.setOrganisationId(organisationId);
         license.setProductName("Sorry no licensing information currently available");
         fallbackList.add(license);
         return fallbackList;
     }
 
+    private List<License> buildFallbackLicenseList(String organisationId, long minimumVersion,
+                                                   Throwable t) {
+        return buildFallbackLicenseList(organisationId, t);
+    }
+
+    /**
+     * Whether the list is the placeholder returned by buildFallbackLicenseList(), rather
+     * than the organisation's licenses.
+     *
+     * @param licenses
+     * @return
+     */
+    public static boolean isFallback(List<License> licenses) {
+        return licenses.size() == 1
+                && FALLBACK_LICENSE_ID.equals(licenses.get(0).getLicenseId());
+    }
+
+    private CompletableFuture<List<License>> buildFallbackLicenseListAsync(
+            String organisationId, Throwable t) {
+        return CompletableFuture.completedFuture(
+                buildFallbackLicenseList(organisationId, t));
+    }
+
     private void randomlyRunLong() throws TimeoutException {
         Random rand = new Random();
         int randomNum = rand.nextInt(3) + 1;
@@ -136,38 +387,92 @@ public class LicenseService {
     }
 
     public License getLicense(String licenseId, String organisationId){
-        License license = licenseRepository
-            .findByOrganisationIdAndLicenseId(organisationId, licenseId);
-        if (null == license) {
-            throw new IllegalArgumentException(
-                String.format(messages.getMessage(
-                                "license.search.error.message", null, null),
-                        licenseId, organisationId));
-        }
+        License license = findLicense(organisationId, licenseId);
         return license.withComment(config.getProperty());
     }
 
     public License getLicense(String organisationId, String licenseId,
                               String clientType) {
-        License license = licenseRepository
-                .findByOrganisationIdAndLicenseId(organisationId, licenseId);
+        License license = findLicense(organisationId, licenseId);
+
+        Organisation organisation = retrieveOrganisationInfo(organisationId, clientType);
+        enrichLicense(license, organisation);
+
+        return license.withComment(config.getProperty());
+    }
+
+    /**
+     * Returns the organisation's licenses with the organisation name and contact fields
+     * already filled in.
+     *
+     * Rather than one organisation lookup per license, every distinct organisation is
+     * resolved in one pass through the organisation cache: the local tier, then a single
+     * pipelined Redis multi-get, and only the remaining misses go to the organisation
+     * service. The organisation service has no batch endpoint, so each of those misses is a
+     * single coalesced call.
+     *
+     * @param organisationId
+     * @return
+     */
+    public List<License> getEnrichedLicensesByOrganisation(String organisationId) {
+        List<License> licenses = findLicenses(organisationId, 0);
+
+        Set<String> organisationIds = licenses.stream()
+                .map(License::getOrganisationId)
+                .collect(Collectors.toSet());
+
+        Map<String, Organisation> organisations = organisationCache.getOrganisations(
+                organisationIds,
+                id -> organisationRequestCoalescer.getOrganisation(id, "rest",
+                        () -> organisationRestClient.fetchOrganisation(id)));
+
+        for (License license : licenses) {
+            enrichLicense(license, organisations.get(license.getOrganisationId()));
+            license.withComment(config.getProperty());
+        }
+        return licenses;
+    }
+
+    /**
+     * Reads the organisation's licenses through the LicenseCache, reloading a cached list
+     * older than minimumVersion.
+     */
+    private List<License> findLicenses(String organisationId, long minimumVersion) {
+        return licenseCache.getLicenses(organisationId, minimumVersion,
+                () -> licenseRepository.findByOrganisationId(organisationId));
+    }
+
+    /**
+     * Looks the license up through the LicenseCache, remembering a miss in the
+     * MissingLicenseCache so that repeated requests for a license that does not exist do not
+     * each query the database.
+     */
+    private License findLicense(String organisationId, String licenseId) {
+        License license = null;
+        if (!missingLicenseCache.isMissing(organisationId, licenseId)) {
+            license = licenseCache.getLicense(organisationId, licenseId,
+                    () -> licenseRepository
+                            .findByOrganisationIdAndLicenseId(organisationId, licenseId));
+            if (null == license) {
+                missingLicenseCache.markMissing(organisationId, licenseId);
+            }
+        }
 
         if (null == license) {
             throw new IllegalArgumentException(String.format(
                     messages.getMessage("license.search.error.message",
                             null, null),licenseId, organisationId));
         }
+        return license;
+    }
 
-        Organisation organisation = retrieveOrganisationInfo(organisationId, clientType);
-
+    private void enrichLicense(License license, Organisation organisation) {
         if (organisation != null) {
             license.setOrganisationName(organisation.getName());
             license.setContactName(organisation.getContactName());
             license.setContactEmail(organisation.getContactEmail());
             license.setContactPhone(organisation.getContactPhone());
         }
-
-        return license.withComment(config.getProperty());
     }
 
     /**
@@ -180,14 +485,18 @@ public class LicenseService {
      * @param license
      * @return
      */
+    @Transactional
     public String createLicense(License license, String organisationId,
                                  Locale locale) {
         String responseMessage = null;
 
         if (license != null) {
             license.setOrganisationId(organisationId);
-            license.setLicenseId(UUID.randomUUID().toString());
+            license.setLicenseId(licenseIdGenerator.nextId());
+            license.setVersion(null);
             licenseRepository.save(license);
+            licensesChanged(LicenseOutbox.CREATE,
+                    organisationId, List.of(license.getLicenseId()));
             license.withComment(config.getProperty());
 
             responseMessage = String.format(messages.getMessage(
@@ -203,41 +512,418 @@ public class LicenseService {
      * sending any locale. In this particular scenario, the application will use the
      * default locale we previously defined in the bootstrap class.
      *
+     * The existing row is read first, and the request copied onto it, so that the cached
+     * entries of the organisation the license belonged to before the update are invalidated
+     * as well, and Hibernate increments the license's version. If the request carries a
+     * version, it must still be the license's current one. A license that does not exist
+     * yet is created, as before.
+     *
      * @param license
      * @return
      */
+    @Transactional
     public License updateLicense(License license){
-        licenseRepository.save(license);
+        License existing = license.getLicenseId() == null ? null
+                : licenseRepository.findById(license.getLicenseId()).orElse(null);
+
+        if (existing == null) {
+            license.setVersion(null);
+            licenseRepository.save(license);
+            licensesChanged(LicenseOutbox.CREATE,
+                    license.getOrganisationId(), List.of(license.getLicenseId()));
+            return license.withComment(config.getProperty());
+        }
+
+        if (license.getVersion() != null
+                && !license.getVersion().equals(existing.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(License.class,
+                    license.getLicenseId());
+        }
+
+        String previousOrganisationId = existing.getOrganisationId();
+        existing.setOrganisationId(license.getOrganisationId());
+        existing.setDescription(license.getDescription());
+        existing.setProductName(license.getProductName());
+        existing.setLicenseType(license.getLicenseType());
+        existing.setComment(license.getComment());
+        entityManager.flush();
+        license.setVersion(existing.getVersion());
+
+        if (!previousOrganisationId.equals(license.getOrganisationId())) {
+            licensesChanged(LicenseOutbox.UPDATE,
+                    previousOrganisationId, List.of(license.getLicenseId()));
+        }
+        licensesChanged(LicenseOutbox.UPDATE,
+                license.getOrganisationId(), List.of(license.getLicenseId()));
         return license.withComment(config.getProperty());
     }
 
-    public String deleteLicense(String licenseId){
+    /**
+     * Changes only the given attributes of a license, in a single UPDATE statement that
+     * also increments the license's version. Unlike updateLicense(), the license is not
+     * read first.
+     *
+     * If the update matches no row, one extra query tells a missing license apart from one
+     * whose version has moved on since the client read it.
+     *
+     * @param organisationId
+     * @param licenseId
+     * @param changes new values by License attribute name, from PATCHABLE_FIELDS
+     * @param expectedVersion the version the client last read, or null to skip the check
+     * @param locale
+     * @return
+     */
+    @Transactional
+    public String patchLicense(String organisationId, String licenseId,
+                               Map<String, Object> changes, Long expectedVersion,
+                               Locale locale) {
+        checkPatch(changes, locale);
+
+        if (licenseRepository.patch(organisationId, licenseId, changes,
+                expectedVersion) == 0) {
+            if (expectedVersion != null && !licenseRepository
+                    .findLicenseIds(organisationId, List.of(licenseId)).isEmpty()) {
+                throw new ObjectOptimisticLockingFailureException(License.class, licenseId);
+            }
+            throw new IllegalArgumentException(String.format(
+                    messages.getMessage("license.search.error.message",
+                            null, null),licenseId, organisationId));
+        }
+
+        licensesChanged(LicenseOutbox.UPDATE, organisationId, List.of(licenseId));
+        return String.format(messages.getMessage(
+                "license.update.message", null, locale), licenseId);
+    }
+
+    /**
+     * Deletes the license with a single DELETE statement, rather than loading it first.
+     *
+     * @param organisationId
+     * @param licenseId
+     * @return
+     */
+    @Transactional
+    public String deleteLicense(String organisationId, String licenseId){
         String responseMessage = null;
-        License license = new License();
-        license.setLicenseId(licenseId);
-        licenseRepository.delete(license);
+        if (licenseRepository.deleteLicense(organisationId, licenseId) > 0) {
+            licensesChanged(LicenseOutbox.DELETE, organisationId, List.of(licenseId));
+        }
         responseMessage = String.format(messages.getMessage(
-                "license.delete.message", null, null),licenseId);
+                "license.delete.message", null, null),licenseId, organisationId);
         return responseMessage;
     }
 
+    /**
+     * Deletes all of the organisation's licenses with a single DELETE statement.
+     *
+     * @param organisationId
+     * @param locale
+     * @return
+     */
+    @Transactional
+    public String deleteLicensesByOrganisation(String organisationId, Locale locale) {
+        int deleted = licenseRepository.deleteAllLicenses(organisationId);
+        if (deleted > 0) {
+            licensesChanged(LicenseOutbox.DELETE, organisationId, null);
+        }
+        return String.format(messages.getMessage(
+                "license.delete.all.message", null, locale), deleted, organisationId);
+    }
+
+    /**
+     * Creates every valid license in the request in a single transaction. New licenses are
+     * persisted in JDBC batches of license.bulk-batch-size rather than one save() per
+     * license.
+     *
+     * @param licenses
+     * @param organisationId
+     * @param locale
+     * @return one result per submitted license, in order
+     */
+    @Transactional
+    public List<BulkLicenseResult> createLicenses(List<License> licenses,
+                                                  String organisationId, Locale locale) {
+        checkBulkSize(licenses, locale);
+
+        List<BulkLicenseResult> results = new ArrayList<>(licenses.size());
+        List<License> valid = new ArrayList<>(licenses.size());
+
+        for (License license : licenses) {
+            if (!isValid(license)) {
+                results.add(new BulkLicenseResult(null, BulkLicenseResult.Status.INVALID,
+                        messages.getMessage("license.bulk.invalid.message", null, locale)));
+                continue;
+            }
+            license.setOrganisationId(organisationId);
+            license.setLicenseId(licenseIdGenerator.nextId());
+            license.setVersion(null);
+            valid.add(license);
+            results.add(new BulkLicenseResult(license.getLicenseId(),
+                    BulkLicenseResult.Status.CREATED, null));
+        }
+
+        licenseRepository.insertAll(valid);
+        List<String> createdIds = new ArrayList<>(valid.size());
+        for (License license : valid) {
+            createdIds.add(license.getLicenseId());
+        }
+        licensesChanged(LicenseOutbox.CREATE, organisationId, createdIds);
+        return results;
+    }
+
+    /**
+     * Updates every license in the request that belongs to the organisation, in a single
+     * transaction. Each chunk of license.bulk-batch-size licenses is loaded with one IN
+     * query, modified in place, and flushed as one JDBC batch of UPDATEs.
+     *
+     * @param licenses
+     * @param organisationId
+     * @param locale
+     * @return one result per submitted license, in order
+     */
+    @Transactional
+    public List<BulkLicenseResult> updateLicenses(List<License> licenses,
+                                                  String organisationId, Locale locale) {
+        checkBulkSize(licenses, locale);
+
+        List<BulkLicenseResult> results = new ArrayList<>(licenses.size());
+        List<String> updatedIds = new ArrayList<>();
+        int batchSize = licenseConfig.getBulkBatchSize();
+
+        for (int from = 0; from < licenses.size(); from += batchSize) {
+            List<License> chunk = licenses.subList(from,
+                    Math.min(from + batchSize, licenses.size()));
+
+            Set<String> licenseIds = new HashSet<>();
+            for (License license : chunk) {
+                if (license != null && license.getLicenseId() != null) {
+                    licenseIds.add(license.getLicenseId());
+                }
+            }
+            Map<String, License> existing = new HashMap<>();
+            for (License license : licenseRepository.findAllById(licenseIds)) {
+                if (organisationId.equals(license.getOrganisationId())) {
+                    existing.put(license.getLicenseId(), license);
+                }
+            }
+
+            for (License request : chunk) {
+                if (!isValid(request) || request.getLicenseId() == null) {
+                    results.add(new BulkLicenseResult(
+                            request == null ? null : request.getLicenseId(),
+                            BulkLicenseResult.Status.INVALID,
+                            messages.getMessage("license.bulk.invalid.message",
+                                    null, locale)));
+                    continue;
+                }
+                License license = existing.get(request.getLicenseId());
+                if (license == null) {
+                    results.add(notFound(request.getLicenseId(), organisationId, locale));
+                    continue;
+                }
+                license.setDescription(request.getDescription());
+                license.setProductName(request.getProductName());
+                license.setLicenseType(request.getLicenseType());
+                license.setComment(request.getComment());
+                updatedIds.add(license.getLicenseId());
+                results.add(new BulkLicenseResult(license.getLicenseId(),
+                        BulkLicenseResult.Status.UPDATED, null));
+            }
+            licenseRepository.flushAndClear();
+        }
+        licensesChanged(LicenseOutbox.UPDATE, organisationId, updatedIds);
+        return results;
+    }
+
+    /**
+     * Deletes every license in the request that belongs to the organisation, in a single
+     * transaction. Each chunk of license.bulk-batch-size ids costs one SELECT to find the
+     * ids that exist and one DELETE ... IN statement.
+     *
+     * @param licenseIds
+     * @param organisationId
+     * @param locale
+     * @return one result per submitted license id, in order
+     */
+    @Transactional
+    public List<BulkLicenseResult> deleteLicenses(List<String> licenseIds,
+                                                  String organisationId, Locale locale) {
+        checkBulkSize(licenseIds, locale);
+
+        List<BulkLicenseResult> results = new ArrayList<>(licenseIds.size());
+        List<String> deletedIds = new ArrayList<>();
+        int batchSize = licenseConfig.getBulkBatchSize();
+
+        for (int from = 0; from < licenseIds.size(); from += batchSize) {
+            List<String> chunk = licenseIds.subList(from,
+                    Math.min(from + batchSize, licenseIds.size()));
+
+            Set<String> existing = new HashSet<>(
+                    licenseRepository.findLicenseIds(organisationId, chunk));
+            if (!existing.isEmpty()) {
+                licenseRepository.deleteLicenses(organisationId, existing);
+                deletedIds.addAll(existing);
+            }
+
+            for (String licenseId : chunk) {
+                results.add(existing.contains(licenseId)
+                        ? new BulkLicenseResult(licenseId,
+                                BulkLicenseResult.Status.DELETED, null)
+                        : notFound(licenseId, organisationId, locale));
+            }
+        }
+        licensesChanged(LicenseOutbox.DELETE, organisationId, deletedIds);
+        return results;
+    }
+
+    /**
+     * Returns the current version of the organisation's licenses, which changes whenever
+     * any of them is created, updated or deleted. Costs one primary key lookup.
+     *
+     * The read is not protected by the licenseService circuit breaker, so it must not fail
+     * the request on its own: if the database cannot be reached, we return null and the
+     * caller carries on without a version, leaving the protected list lookup to fail over to
+     * its fallback.
+     *
+     * @param organisationId
+     * @return the version, 0 if no license of the organisation has ever been written, or
+     * null if it could not be read
+     */
+    public Long getLicenseVersion(String organisationId) {
+        try {
+            return licenseVersionRepository.findById(organisationId)
+                    .map(LicenseVersion::getVersion)
+                    .orElse(0L);
+        } catch (DataAccessException | TransactionException ex) {
+            log.warn("Unable to read the license version of organisation {}: {}",
+                    organisationId, ex.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Records a write to the organisation's licenses: increments the organisation's license
+     * version and writes the change event to the outbox inside the current transaction, and
+     * invalidates the cached entries. A null list of license ids stands for all of the
+     * organisation's licenses.
+     */
+    private void licensesChanged(String action, String organisationId,
+                                 List<String> licenseIds) {
+        if (organisationId == null || (licenseIds != null && licenseIds.isEmpty())) {
+            return;
+        }
+        licenseVersionRepository.increment(organisationId);
+        licenseOutbox.record(action, organisationId, licenseIds);
+        licenseCache.invalidate(organisationId, licenseIds);
+    }
+
+    private void checkFields(List<String> fields, Locale locale) {
+        for (String field : fields) {
+            if (!SELECTABLE_FIELDS.contains(field)) {
+                throw new InvalidLicenseRequestException(String.format(messages.getMessage(
+                        "license.fields.invalid.message", null, locale),
+                        field, SELECTABLE_FIELDS));
+            }
+        }
+    }
+
+    private void checkPatch(Map<String, Object> changes, Locale locale) {
+        if (changes == null || changes.isEmpty()) {
+            throw new InvalidLicenseRequestException(String.format(messages.getMessage(
+                    "license.patch.invalid.message", null, locale),
+                    null, PATCHABLE_FIELDS));
+        }
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            String field = change.getKey();
+            Object value = change.getValue();
+            boolean required = field.equals("productName") || field.equals("licenseType");
+            if (!PATCHABLE_FIELDS.contains(field)
+                    || (value != null && !(value instanceof String))
+                    || (required && (value == null || ((String) value).isBlank()))) {
+                throw new InvalidLicenseRequestException(String.format(messages.getMessage(
+                        "license.patch.invalid.message", null, locale),
+                        field, PATCHABLE_FIELDS));
+            }
+        }
+    }
+
+    private void checkBulkSize(List<?> items, Locale locale) {
+        if (items.size() > licenseConfig.getBulkMaxItems()) {
+            throw new InvalidLicenseRequestException(String.format(messages.getMessage(
+                    "license.bulk.limit.message", null, locale),
+                    licenseConfig.getBulkMaxItems()));
+        }
+    }
+
+    private boolean isValid(License license) {
+        return license != null
+                && license.getProductName() != null
+                && license.getLicenseType() != null;
+    }
+
+    private BulkLicenseResult notFound(String licenseId, String organisationId,
+                                       Locale locale) {
+        return new BulkLicenseResult(licenseId, BulkLicenseResult.Status.NOT_FOUND,
+                String.format(messages.getMessage("license.bulk.notfound.message",
+                        null, locale), licenseId, organisationId));
+    }
+
     /**
      * The method will resolve based on the clientType passed to the route. This client type is
      * used to look up an organization service instance. Called from getLicense() method to
      * retrieve the organization data from the database.
      *
+     * Concurrent lookups for the same organisation are coalesced, so that only one of them
+     * calls the organisation service and the others share its result. Feign and discovery
+     * calls are hedged when organisation.hedging.enabled is set: a slow first attempt is
+     * backed up by a second one, sent to a different instance, and the first to answer wins.
+     * Rest calls go through the gateway at a fixed address and are not hedged.
+     *
      * @param organisationId
      * @param clientType
      * @return
      */
     private Organisation retrieveOrganisationInfo(String organisationId,
                                                   String clientType) {
+        return organisationRequestCoalescer.getOrganisation(organisationId, clientType,
+                () -> fetchOrganisation(organisationId, clientType));
+    }
+
+    /**
+     * Times every organisation lookup under organisation.client.requests, tagged with the
+     * client type and whether it succeeded, so that the clients can be compared in
+     * production. Unknown client types, which fall back to the rest client, are tagged
+     * "default" to keep the number of tag values bounded.
+     */
+    private Organisation fetchOrganisation(String organisationId, String clientType) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            Organisation organisation = fetchOrganisationWith(organisationId, clientType);
+            outcome = organisation == null ? "empty" : "success";
+            return organisation;
+        } finally {
+            String client = clientType;
+            if (!"feign".equals(client) && !"rest".equals(client)
+                    && !"discovery".equals(client)) {
+                client = "default";
+            }
+            sample.stop(Timer.builder("organisation.client.requests")
+                    .description("Organisation lookups through the organisation clients")
+                    .tag("client", client)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    private Organisation fetchOrganisationWith(String organisationId, String clientType) {
         Organisation organisation = null;
 
         switch (clientType) {
             case "feign":
                 System.out.println("I am using the feign client");
-                organisation = organisationFeignClient.getOrganisation(organisationId);
+                organisation = organisationRequestHedger.execute(
+                        () -> organisationFeignClient.getOrganisation(organisationId));
                 break;
             case "rest":
                 System.out.println("I am using the rest client");
@@ -245,7 +931,10 @@ public class LicenseService {
                 break;
             case "discovery":
                 System.out.println("I am using the discovery client");
-                organisation = organisationDiscoveryClient.getOrganisation(organisationId);
+                Set<String> attempted = ConcurrentHashMap.newKeySet();
+                organisation = organisationRequestHedger.execute(
+                        () -> organisationDiscoveryClient.getOrganisation(organisationId,
+                                attempted));
                 break;
             default:
                 organisation = organisationRestClient.getOrganisation(organisationId);
@@ -2,14 +2,13 @@ package com.sadatmalik.optima.license.service.client;
 
 import com.sadatmalik.optima.license.model.Organisation;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cloud.client.ServiceInstance;
-import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
-import java.util.List;
+import java.util.Set;
 
 /**
  * The Spring Discovery Client offers the lowest level of access to the Load Balancer and the
@@ -23,9 +22,11 @@ import java.util.List;
  * The ServiceInstance class holds information about a specific instance of a service, including
  * its hostname, port, and URI.
  *
- * We take the first ServiceInstance class in the list to build a target URL that can then be
- * used to call the service, using a standard Spring RestTemplate to call the organisation
- * service and retrieve the required organisation data.
+ * The OrganisationInstanceBalancer keeps a cached copy of that list, refreshed in the
+ * background, and chooses the ServiceInstance for each request based on its observed latency
+ * and outstanding requests. We use the chosen instance to build a target URL, and a plain
+ * Spring RestTemplate to call the organisation service and retrieve the required organisation
+ * data.
  *
  * To use the Discovery Client, we first need to annotate the OptimaLicensingServiceApplication
  * with @EnableDiscoveryClient.
@@ -35,15 +36,12 @@ import java.util.List;
  * responsibility to choose which returned service instance you’re going to invoke. And it is
  * your responsibility to build the URL that you’ll use to call your service.
  *
- * Directly instantiated the RestTemplate class in the code is antithetical to usual Spring
- * REST invocations because you’ll usually have the Spring framework inject the RestTemplate
- * class via the @Autowired annotation.
- *
  * Once we’ve enabled the Spring Discovery Client in the application class via
- * @EnableDiscoveryClient, all REST templates managed by the Spring framework will have a Load
- * Balancer–enabled interceptor injected into those instances. This will change how URLs are
- * created with the RestTemplate class. Directly instantiating RestTemplate allows you to avoid
- * this behaviour.
+ * @EnableDiscoveryClient, REST templates marked @LoadBalanced will have a Load Balancer–enabled
+ * interceptor injected into those instances. This would change how URLs are created with the
+ * RestTemplate class, so we inject the plain discoveryRestTemplate bean instead. It shares the
+ * pooled, keep-alive HTTP client defined in HttpClientConfig, rather than opening fresh
+ * connections from a new RestTemplate on every call.
  *
  * @author sadatmalik
  */
@@ -51,36 +49,48 @@ import java.util.List;
 public class OrganisationDiscoveryClient {
 
     @Autowired
-    private DiscoveryClient discoveryClient;
+    private OrganisationInstanceBalancer instanceBalancer;
+
+    @Autowired
+    @Qualifier("discoveryRestTemplate")
+    private RestTemplate restTemplate;
 
     /**
      * The code that calls the organisation service via the Spring Discovery
      * Client.
      *
-     * Using the injected discovery service, gets a list of all the instances of
-     * the organisation services. Then retrieves the service endpoint, and uses
-     * it with a standard Spring RestTemplate class to call the service.
+     * Using the instance balancer, picks one of the instances of the organisation
+     * services. Then retrieves the service endpoint, and uses it with a plain Spring
+     * RestTemplate to call the service.
      *
      * @param organisationId
      * @return
      */
     public Organisation getOrganisation(String organisationId) {
-        RestTemplate restTemplate = new RestTemplate();
-        List<ServiceInstance> instances = discoveryClient
-                .getInstances("optima-organisation-service");
-
-        if (instances.size() == 0)
-            return null;
+        return getOrganisation(organisationId, null);
+    }
 
-        String serviceUri = String.format("%s/v1/organisation/%s",
-                instances.get(0).getUri().toString(), organisationId);
+    /**
+     * As getOrganisation(organisationId), but sends the call to an instance not yet in
+     * attempted, if there is one. Used to send a hedged request to a different instance
+     * than the first attempt.
+     *
+     * @param organisationId
+     * @param attempted keys of the instances already attempted, shared between attempts
+     * @return
+     */
+    public Organisation getOrganisation(String organisationId, Set<String> attempted) {
+        return instanceBalancer.execute(instance -> {
+            String serviceUri = String.format("%s/v1/organisation/%s",
+                    instance.getUri().toString(), organisationId);
 
-        ResponseEntity<Organisation> restExchange =
-                restTemplate.exchange(
-                        serviceUri,
-                        HttpMethod.GET,
-                        null, Organisation.class, organisationId);
+            ResponseEntity<Organisation> restExchange =
+                    restTemplate.exchange(
+                            serviceUri,
+                            HttpMethod.GET,
+                            null, Organisation.class, organisationId);
 
-        return restExchange.getBody();
+            return restExchange.getBody();
+        }, attempted);
     }
 }
\ No newline at end of file
@@ -0,0 +1,258 @@
+package com.sadatmalik.optima.license.service.client;
+
+import com.sadatmalik.optima.license.config.OrganisationBalancerConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Client-side load balancer for the OrganisationDiscoveryClient.
+ *
+ * Rather than asking the DiscoveryClient for the instance list on every request and always
+ * calling the first instance, we keep a cached copy of the list that is refreshed in the
+ * background, and track for each instance:
+ *
+ *   - the number of requests currently outstanding against it
+ *
+ *   - an exponentially weighted moving average of its response time
+ *
+ *   - the number of consecutive failures it has returned
+ *
+ * Each request picks two random healthy instances and sends the request to the one with the
+ * lower score ("power of two choices"). Under the LATENCY policy the score is the average
+ * latency weighted by the outstanding requests, under LEAST_OUTSTANDING it is only the
+ * outstanding requests. Picking between two random candidates, rather than always the best
+ * one, stops every caller piling on to the same instance between updates.
+ *
+ * Failures count against the score too. A failed request is fed into the latency average as
+ * if it had taken at least failurePenalty, and under either policy the score is multiplied by
+ * one plus the consecutive failures. Otherwise an instance that fails straight away (a
+ * refused connection, a 503) would have the lowest latency of all and win every comparison
+ * until it was ejected.
+ *
+ * An instance that fails failureThreshold times in a row is ejected for ejectionDuration.
+ * Client errors (4xx) are the caller's fault and do not count as failures. If every instance
+ * is ejected, we fall back to choosing among all of them rather than failing outright.
+ *
+ * Callers that retry or hedge a request can pass in the set of instances already attempted,
+ * so that the next attempt goes to a different instance whenever there is one.
+ *
+ * @author sadatmalik
+ */
+@Slf4j
+@Component
+public class OrganisationInstanceBalancer {
+
+    private final DiscoveryClient discoveryClient;
+    private final OrganisationBalancerConfig config;
+    private final ScheduledExecutorService refresher;
+    private final Map<String, InstanceStats> stats = new ConcurrentHashMap<>();
+
+    private final Counter ejections;
+
+    private volatile List<ServiceInstance> instances = Collections.emptyList();
+
+    public OrganisationInstanceBalancer(DiscoveryClient discoveryClient,
+                                        OrganisationBalancerConfig config,
+                                        MeterRegistry meterRegistry) {
+        this.discoveryClient = discoveryClient;
+        this.config = config;
+        this.ejections = Counter.builder("organisation.balancer.ejections")
+                .description("Organisation service instances ejected after repeated failures")
+                .register(meterRegistry);
+        Gauge.builder("organisation.balancer.instances", this, b -> b.instances.size())
+                .description("Organisation service instances known to the balancer")
+                .register(meterRegistry);
+
+        this.refresher = Executors.newSingleThreadScheduledExecutor();
+        long interval = config.getRefreshInterval().toMillis();
+        this.refresher.scheduleWithFixedDelay(this::refreshInstances,
+                0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Chooses an instance, runs the call against it and records the outcome.
+     *
+     * @param call performs the request against the chosen instance
+     * @return the result of the call, or null if no instance is registered
+     */
+    public <T> T execute(Function<ServiceInstance, T> call) {
+        return execute(call, null);
+    }
+
+    /**
+     * As execute(call), but avoids the instances already attempted for this request and
+     * adds the chosen instance to them.
+     *
+     * @param call performs the request against the chosen instance
+     * @param attempted keys of the instances already attempted, shared between attempts
+     * @return the result of the call, or null if no instance is registered
+     */
+    public <T> T execute(Function<ServiceInstance, T> call, Set<String> attempted) {
+        ServiceInstance instance = choose(attempted);
+        if (instance == null) {
+            return null;
+        }
+        if (attempted != null) {
+            attempted.add(key(instance));
+        }
+
+        InstanceStats instanceStats = statsFor(instance);
+        instanceStats.outstanding.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            T result = call.apply(instance);
+            instanceStats.recordSuccess(System.nanoTime() - start, config.getLatencyDecay());
+            return result;
+        } catch (HttpClientErrorException ex) {
+            instanceStats.recordSuccess(System.nanoTime() - start, config.getLatencyDecay());
+            throw ex;
+        } catch (RuntimeException ex) {
+            instanceStats.recordLatency(Math.max(System.nanoTime() - start,
+                    config.getFailurePenalty().toNanos()), config.getLatencyDecay());
+            recordFailure(instance, instanceStats);
+            throw ex;
+        } finally {
+            instanceStats.outstanding.decrementAndGet();
+        }
+    }
+
+    ServiceInstance choose(Set<String> attempted) {
+        List<ServiceInstance> current = instances;
+        if (current.isEmpty()) {
+            refreshInstances();
+            current = instances;
+            if (current.isEmpty()) {
+                return null;
+            }
+        }
+
+        long now = System.nanoTime();
+        List<ServiceInstance> healthy = new ArrayList<>(current.size());
+        for (ServiceInstance instance : current) {
+            if (!statsFor(instance).isEjected(now)) {
+                healthy.add(instance);
+            }
+        }
+        if (healthy.isEmpty()) {
+            healthy = current;
+        }
+        if (attempted != null && !attempted.isEmpty()) {
+            List<ServiceInstance> untried = healthy.stream()
+                    .filter(instance -> !attempted.contains(key(instance)))
+                    .collect(Collectors.toList());
+            if (!untried.isEmpty()) {
+                healthy = untried;
+            }
+        }
+        if (healthy.size() == 1) {
+            return healthy.get(0);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(healthy.size());
+        int second = random.nextInt(healthy.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        ServiceInstance a = healthy.get(first);
+        ServiceInstance b = healthy.get(second);
+        return score(a) <= score(b) ? a : b;
+    }
+
+    private double score(ServiceInstance instance) {
+        InstanceStats instanceStats = statsFor(instance);
+        double outstanding = instanceStats.outstanding.get() + 1;
+        double failures = instanceStats.consecutiveFailures.get() + 1;
+        if (config.getPolicy() == OrganisationBalancerConfig.Policy.LEAST_OUTSTANDING) {
+            return outstanding * failures;
+        }
+        return instanceStats.latencyNanos * outstanding * failures;
+    }
+
+    private void recordFailure(ServiceInstance instance, InstanceStats instanceStats) {
+        if (instanceStats.consecutiveFailures.incrementAndGet() >= config.getFailureThreshold()
+                && !instanceStats.isEjected(System.nanoTime())) {
+            instanceStats.ejectedUntil =
+                    System.nanoTime() + config.getEjectionDuration().toNanos();
+            ejections.increment();
+            log.warn("Ejecting organisation service instance {} for {} after {} " +
+                            "consecutive failures", key(instance),
+                    config.getEjectionDuration(), instanceStats.consecutiveFailures.get());
+        }
+    }
+
+    private void refreshInstances() {
+        try {
+            List<ServiceInstance> refreshed = discoveryClient
+                    .getInstances(config.getServiceId());
+            instances = Collections.unmodifiableList(new ArrayList<>(refreshed));
+            stats.keySet().retainAll(refreshed.stream()
+                    .map(OrganisationInstanceBalancer::key)
+                    .collect(Collectors.toSet()));
+        } catch (Exception ex) {
+            log.warn("Unable to refresh the organisation service instances, keeping the " +
+                    "{} cached. Exception {}", instances.size(), ex.getMessage());
+        }
+    }
+
+    private InstanceStats statsFor(ServiceInstance instance) {
+        return stats.computeIfAbsent(key(instance), k -> new InstanceStats());
+    }
+
+    private static String key(ServiceInstance instance) {
+        return instance.getHost() + ":" + instance.getPort();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * What we have observed about a single instance. Latency updates may race with each
+     * other; losing the odd sample does not matter for a moving average.
+     */
+    private static class InstanceStats {
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private volatile double latencyNanos;
+        private volatile long ejectedUntil;
+
+        void recordSuccess(long elapsedNanos, double decay) {
+            consecutiveFailures.set(0);
+            recordLatency(elapsedNanos, decay);
+        }
+
+        void recordLatency(long elapsedNanos, double decay) {
+            double current = latencyNanos;
+            latencyNanos = current == 0
+                    ? elapsedNanos
+                    : decay * elapsedNanos + (1 - decay) * current;
+        }
+
+        boolean isEjected(long now) {
+            return ejectedUntil != 0 && now - ejectedUntil < 0;
+        }
+    }
+}
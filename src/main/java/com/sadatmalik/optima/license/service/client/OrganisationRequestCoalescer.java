@@ -0,0 +1,131 @@
+package com.sadatmalik.optima.license.service.client;
+
+import com.sadatmalik.optima.license.config.OrganisationCacheConfig;
+import com.sadatmalik.optima.license.model.Organisation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight coalescing of organisation lookups.
+ *
+ * When a popular organisation misses the cache, every concurrent request would otherwise make
+ * its own call to the organisation service. Instead, the first caller for an organisation id
+ * becomes the leader and performs the fetch; every caller that arrives while that fetch is in
+ * flight waits on it and shares its result, or its exception.
+ *
+ * Fetches are keyed by client type as well as organisation id, so that a lookup made through
+ * one client (feign, rest or discovery) is never answered by a call made through another.
+ *
+ * A follower waits at most coalescingTimeout for the leader. If the leader's call hangs, the
+ * follower gives up on it and makes its own call, rather than every concurrent lookup of the
+ * organisation hanging with it.
+ *
+ * The in-flight entry is removed as soon as the fetch completes, so nothing is cached here -
+ * results are only shared between callers that overlap in time.
+ *
+ * The organisation.lookups.coalesced counter records how many callers were served by another
+ * caller's fetch, organisation.lookups.coalesced.timeouts how many stopped waiting for it,
+ * and organisation.lookups.inflight how many fetches are currently running.
+ *
+ * @author sadatmalik
+ */
+@Component
+public class OrganisationRequestCoalescer {
+
+    private final Map<String, CompletableFuture<Organisation>> inFlight =
+            new ConcurrentHashMap<>();
+
+    private final long timeoutNanos;
+
+    private final Counter leaders;
+    private final Counter coalesced;
+    private final Counter timeouts;
+
+    public OrganisationRequestCoalescer(OrganisationCacheConfig config,
+                                        MeterRegistry meterRegistry) {
+        this.timeoutNanos = config.getCoalescingTimeout().toNanos();
+        this.leaders = Counter.builder("organisation.lookups.leaders")
+                .description("Organisation lookups that performed the fetch themselves")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("organisation.lookups.coalesced")
+                .description("Organisation lookups served by a fetch already in flight")
+                .register(meterRegistry);
+        this.timeouts = Counter.builder("organisation.lookups.coalesced.timeouts")
+                .description("Organisation lookups that stopped waiting for a fetch in " +
+                        "flight and made their own call")
+                .register(meterRegistry);
+        Gauge.builder("organisation.lookups.inflight", inFlight, Map::size)
+                .description("Organisation fetches currently in flight")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the organisation, either by running the fetch or by joining a fetch for the
+     * same organisation id and client type that is already in flight.
+     *
+     * @param organisationId
+     * @param clientType the client the fetch goes through
+     * @param fetch performs the actual lookup
+     * @return
+     */
+    public Organisation getOrganisation(String organisationId, String clientType,
+                                        Supplier<Organisation> fetch) {
+        String key = clientType + ":" + organisationId;
+        CompletableFuture<Organisation> flight = new CompletableFuture<>();
+        CompletableFuture<Organisation> existing = inFlight.putIfAbsent(key, flight);
+
+        if (existing != null) {
+            coalesced.increment();
+            return join(existing, fetch);
+        }
+
+        leaders.increment();
+        try {
+            Organisation organisation = fetch.get();
+            flight.complete(organisation);
+            return organisation;
+        } catch (Throwable t) {
+            flight.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Waits up to the coalescing timeout for the leader's fetch, rethrowing its failure
+     * unwrapped so that followers see the same exception the leader did. Past the timeout,
+     * runs the fetch itself.
+     */
+    private Organisation join(CompletableFuture<Organisation> flight,
+                              Supplier<Organisation> fetch) {
+        try {
+            return flight.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException ex) {
+            timeouts.increment();
+            return fetch.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
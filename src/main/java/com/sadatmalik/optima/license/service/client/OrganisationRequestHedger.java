@@ -0,0 +1,263 @@
+package com.sadatmalik.optima.license.service.client;
+
+import com.sadatmalik.optima.license.config.OrganisationHedgingConfig;
+import com.sadatmalik.optima.license.model.Organisation;
+import com.sadatmalik.optima.license.utils.UserContextHolder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Hedged requests for tail-latency control on calls to the organisation service.
+ *
+ * The first attempt is started on the hedging pool and we wait for it up to the hedge delay,
+ * which tracks a high percentile of recent response times. If it has not answered by then,
+ * a second attempt is started and whichever attempt succeeds first wins; the request only
+ * fails if both attempts fail. The attempt that loses is cancelled, interrupting it if it is
+ * still running, so that it does not hold a pool thread or a connection any longer.
+ *
+ * Hedging only helps when the second attempt can reach a different instance. The Feign
+ * client's load balancer round-robins it to the next instance and the discovery client avoids
+ * the instance already attempted; the rest client calls the gateway at a fixed address, so it
+ * does not hedge.
+ *
+ * Hedging is budgeted: every request earns budgetRatio of a hedge, and a hedge is only sent
+ * when a whole one has been earned, so hedges can never exceed that fraction of the traffic.
+ *
+ * The attempts run with the caller's UserContext and Spring Security context. When hedging
+ * is disabled, or the pool is saturated, the attempt simply runs on the calling thread.
+ *
+ * The organisation.hedging.* counters record requests, hedges fired, hedges that won and
+ * hedges skipped because the budget was spent.
+ *
+ * @author sadatmalik
+ */
+@Component
+public class OrganisationRequestHedger {
+
+    private static final long RECOMPUTE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final OrganisationHedgingConfig config;
+    private final ExecutorService pool;
+    private final Executor executor;
+
+    private final long[] samples;
+    private int sampleCount;
+    private int nextSample;
+    private long hedgeDelayNanos;
+    private long recomputedAt;
+    private double budget;
+
+    private final Counter requests;
+    private final Counter hedges;
+    private final Counter hedgeWins;
+    private final Counter budgetExhausted;
+
+    public OrganisationRequestHedger(OrganisationHedgingConfig config,
+                                     MeterRegistry meterRegistry) {
+        this.config = config;
+        this.samples = new long[config.getSampleWindow()];
+        this.hedgeDelayNanos = config.getDefaultDelay().toNanos();
+        this.pool = new DelegatingSecurityContextExecutorService(new ThreadPoolExecutor(
+                config.getThreads(), config.getThreads(), 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(config.getQueueCapacity())));
+        this.executor = task -> pool.execute(UserContextHolder.wrap(task));
+
+        this.requests = counter(meterRegistry, "organisation.hedging.requests",
+                "Organisation service calls eligible for hedging");
+        this.hedges = counter(meterRegistry, "organisation.hedging.hedges",
+                "Second attempts sent because the first was slow");
+        this.hedgeWins = counter(meterRegistry, "organisation.hedging.wins",
+                "Second attempts that answered before the first");
+        this.budgetExhausted = counter(meterRegistry, "organisation.hedging.budget.exhausted",
+                "Hedges skipped because the hedging budget was spent");
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String name,
+                                   String description) {
+        return Counter.builder(name).description(description).register(meterRegistry);
+    }
+
+    /**
+     * Runs the attempt, hedging it with a second one if it is slow.
+     *
+     * @param attempt a single call to the organisation service
+     * @return
+     */
+    public Organisation execute(Supplier<Organisation> attempt) {
+        if (!config.isEnabled()) {
+            return attempt.get();
+        }
+        requests.increment();
+        earnBudget();
+
+        long start = System.nanoTime();
+        CompletableFuture<Organisation> primary;
+        try {
+            primary = start(attempt);
+        } catch (RejectedExecutionException ex) {
+            return attempt.get();
+        }
+
+        try {
+            Organisation organisation = primary.get(currentHedgeDelay(), TimeUnit.NANOSECONDS);
+            recordLatency(System.nanoTime() - start);
+            return organisation;
+        } catch (TimeoutException ex) {
+            Organisation organisation = hedge(primary, attempt);
+            recordLatency(System.nanoTime() - start);
+            return organisation;
+        } catch (ExecutionException ex) {
+            throw unwrap(ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private Organisation hedge(CompletableFuture<Organisation> primary,
+                               Supplier<Organisation> attempt) {
+        if (!spendBudget()) {
+            budgetExhausted.increment();
+            return join(primary);
+        }
+
+        CompletableFuture<Organisation> secondary;
+        try {
+            secondary = start(attempt);
+        } catch (RejectedExecutionException ex) {
+            return join(primary);
+        }
+        hedges.increment();
+
+        CompletableFuture<Organisation> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        primary.whenComplete(firstSuccess(winner, failures, false));
+        secondary.whenComplete(firstSuccess(winner, failures, true));
+        winner.whenComplete((organisation, ex) -> {
+            primary.cancel(true);
+            secondary.cancel(true);
+        });
+        return join(winner);
+    }
+
+    /**
+     * Starts the attempt on the hedging pool. Unlike CompletableFuture.supplyAsync(),
+     * cancelling the returned future interrupts the attempt if it is running.
+     */
+    private CompletableFuture<Organisation> start(Supplier<Organisation> attempt) {
+        CompletableFuture<Organisation> result = new CompletableFuture<>();
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            try {
+                result.complete(attempt.get());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }, null);
+        executor.execute(task);
+        result.whenComplete((organisation, ex) -> {
+            if (result.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private BiConsumer<Organisation, Throwable> firstSuccess(
+            CompletableFuture<Organisation> winner, AtomicInteger failures, boolean hedge) {
+        return (organisation, ex) -> {
+            if (ex == null) {
+                if (winner.complete(organisation) && hedge) {
+                    hedgeWins.increment();
+                }
+            } else if (failures.incrementAndGet() == 2) {
+                winner.completeExceptionally(ex);
+            }
+        };
+    }
+
+    private synchronized void earnBudget() {
+        budget = Math.min(budget + config.getBudgetRatio(), 10.0);
+    }
+
+    private synchronized boolean spendBudget() {
+        if (budget < 1.0) {
+            return false;
+        }
+        budget -= 1.0;
+        return true;
+    }
+
+    private synchronized void recordLatency(long elapsedNanos) {
+        samples[nextSample] = elapsedNanos;
+        nextSample = (nextSample + 1) % samples.length;
+        sampleCount = Math.min(sampleCount + 1, samples.length);
+    }
+
+    /**
+     * Recomputes the percentile at most once a second, so that the common path is a field
+     * read rather than a sort of the sample window.
+     */
+    private synchronized long currentHedgeDelay() {
+        long now = System.nanoTime();
+        if (now - recomputedAt < RECOMPUTE_INTERVAL_NANOS) {
+            return hedgeDelayNanos;
+        }
+        recomputedAt = now;
+
+        if (sampleCount < config.getMinimumSamples()) {
+            hedgeDelayNanos = config.getDefaultDelay().toNanos();
+        } else {
+            long[] sorted = Arrays.copyOf(samples, sampleCount);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(config.getPercentile() / 100.0 * sorted.length) - 1;
+            hedgeDelayNanos = Math.max(sorted[Math.max(0, index)],
+                    config.getMinimumDelay().toNanos());
+        }
+        return hedgeDelayNanos;
+    }
+
+    private Organisation join(CompletableFuture<Organisation> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            throw unwrap(ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private RuntimeException unwrap(ExecutionException ex) {
+        Throwable cause = ex.getCause();
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
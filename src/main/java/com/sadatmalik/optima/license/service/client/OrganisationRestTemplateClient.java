@@ -1,8 +1,8 @@
 package com.sadatmalik.optima.license.service.client;
 
+import com.sadatmalik.optima.license.cache.OrganisationCache;
 import com.sadatmalik.optima.license.model.Organisation;
-import com.sadatmalik.optima.license.repository.OrganisationRedisRepository;
-import com.sadatmalik.optima.license.utils.UserContext;
+import com.sadatmalik.optima.license.utils.UserContextHolder;
 import lombok.extern.slf4j.Slf4j;
 import org.keycloak.adapters.springsecurity.client.KeycloakRestTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -29,12 +29,10 @@ import org.springframework.stereotype.Component;
  * Note - the use of KeycloakRestTemplate is a drop-in replacement for the standard
  * RestTemplate. It handles the propagation of the access token.
  *
- * Every time the licensing service needs the organisation data, it checks the Redis cache
- * before calling the organisation service.
+ * Every time the licensing service needs the organisation data, it checks the in-process
+ * cache and then the Redis cache before calling the organisation service.
  *
- * To increase resiliency, we never let the entire call fail if we cannot communicate with
- * the Redis server. Instead, we log the exception and let the call through to the
- * organisation service.
+ * @see com.sadatmalik.optima.license.cache.OrganisationCache
  *
  * @author sadatmalik
  */
@@ -46,7 +44,7 @@ public class OrganisationRestTemplateClient {
     private KeycloakRestTemplate restTemplate;
 
     @Autowired
-    OrganisationRedisRepository redisRepository;
+    OrganisationCache organisationCache;
 
     /**
      * When using a Load Balancer–backed RestTemplate, we build the target URL with the
@@ -60,69 +58,42 @@ public class OrganisationRestTemplateClient {
      * Also, by using the RestTemplate class, the Spring Cloud Load Balancer will round-
      * robin load balance all requests among all the service instances.
      *
-     * If can’t retrieve data from Redis, calls the organisation service to retrieve the
-     * data from the source database and saves it in Redis.
+     * If can’t retrieve data from the local or Redis cache, calls the organisation service
+     * to retrieve the data from the source database and saves it in both cache tiers.
+     *
+     * That call is not hedged. fetchOrganisation() goes through the gateway at the fixed
+     * localhost:8072 address, so a second attempt could not be steered to a different
+     * organisation service instance and would only double the load on the one that is
+     * already slow.
      *
      * @param organisationId
      * @return
      */
     public Organisation getOrganisation(String organisationId){
-        log.debug("In Licensing Service.getOrganization: {}", UserContext.getCorrelationId());
-
-        Organisation organisation = checkRedisCache(organisationId);
-
-        if (organisation != null){
-            log.debug("I have successfully retrieved an organization {} " +
-                    "from the redis cache: {}", organisationId, organisation);
-            return organisation;
-        }
-
-        log.debug("Unable to locate organisation from the redis cache: {}.",
-                organisationId);
-
-        ResponseEntity<Organisation> restExchange =
-                restTemplate.exchange(
-                        "http://localhost:8072/optima-organisation-service/v1/organisation/{organisationId}",
-                        HttpMethod.GET,
-                        null, Organisation.class, organisationId);
-
-        /*Save the record to cache*/
-        organisation = restExchange.getBody();
-        if (organisation != null) {
-            cacheOrganisationObject(organisation);
-        }
+        log.debug("In Licensing Service.getOrganization: {}",
+                UserContextHolder.getContext().getCorrelationId());
 
-        return restExchange.getBody();
+        return organisationCache.getOrganisation(organisationId,
+                this::fetchOrganisation);
     }
 
     /**
-     * Tries to retrieve an Organization class with its organization ID from Redis.
+     * Calls the organisation service to retrieve the data from the source database. Invoked
+     * by the OrganisationCache once the local and Redis tiers have both missed.
+     *
+     * The KeycloakRestTemplate forwards the access token of the current request, so this
+     * must only be called on a request thread, or one carrying its security context.
      *
      * @param organisationId
      * @return
      */
-    private Organisation checkRedisCache(String organisationId) {
-        try {
-            return redisRepository.findById(
-                    organisationId).orElse(null);
-        } catch (Exception ex) {
-            log.error("Error encountered while trying to retrieve organization {} " +
-                    "check Redis Cache.  Exception {}", organisationId, ex);
-            return null;
-        }
-    }
+    public Organisation fetchOrganisation(String organisationId) {
+        ResponseEntity<Organisation> restExchange =
+                restTemplate.exchange(
+                        "http://localhost:8072/optima-organisation-service/v1/organisation/{organisationId}",
+                        HttpMethod.GET,
+                        null, Organisation.class, organisationId);
 
-    /**
-     * Saves the organisation in Redis.
-     *
-     * @param organisation
-     */
-    private void cacheOrganisationObject(Organisation organisation) {
-        try {
-            redisRepository.save(organisation);
-        }catch (Exception ex){
-            log.error("Unable to cache organization {} in Redis. " +
-                    "Exception {}", organisation.getId(), ex);
-        }
+        return restExchange.getBody();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,40 @@
+package com.sadatmalik.optima.license.utils;
+
+import io.github.resilience4j.core.ContextPropagator;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Carries the Spring Security context of the calling thread over to the Resilience4j
+ * thread-pool bulkhead threads.
+ *
+ * Methods running on a bulkhead pool still need the caller's authentication, for example so
+ * that the KeycloakRestTemplate can forward the access token to the organisation service.
+ * Resilience4j calls retrieve() on the calling thread, copy() on the pool thread before the
+ * task runs and clear() once it has finished.
+ *
+ * Propagators are registered per bulkhead instance with the contextPropagators property.
+ *
+ * @author sadatmalik
+ */
+public class SecurityContextPropagator implements ContextPropagator<SecurityContext> {
+
+    @Override
+    public Supplier<Optional<SecurityContext>> retrieve() {
+        return () -> Optional.of(SecurityContextHolder.getContext());
+    }
+
+    @Override
+    public Consumer<Optional<SecurityContext>> copy() {
+        return context -> context.ifPresent(SecurityContextHolder::setContext);
+    }
+
+    @Override
+    public Consumer<Optional<SecurityContext>> clear() {
+        return context -> SecurityContextHolder.clearContext();
+    }
+}
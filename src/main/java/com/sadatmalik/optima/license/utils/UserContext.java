@@ -1,9 +1,8 @@
 package com.sadatmalik.optima.license.utils;
 
+import lombok.AllArgsConstructor;
 import lombok.Getter;
-import lombok.Setter;
 import org.springframework.http.HttpHeaders;
-import org.springframework.stereotype.Component;
 
 /**
  * POJO class that contains all the specific data we want to store in the UserContextHolder.
@@ -11,59 +10,46 @@ import org.springframework.stereotype.Component;
  * The UserContext class holds the HTTP header values for an individual service client
  * request that is processed by our microservice.
  *
+ * A UserContext is immutable. The UserContextFilter builds one per incoming request from
+ * its headers and stores it in the UserContextHolder, so reading any of the values is a
+ * single ThreadLocal lookup followed by a field read. Because it never changes, the same
+ * instance can safely be handed to other threads working on the request.
+ *
  * @author sadatmalik
  */
 @Getter
-@Setter
-@Component
-public class UserContext {
+@AllArgsConstructor
+public final class UserContext {
     public static final String CORRELATION_ID  = "tmx-correlation-id";
     public static final String AUTH_TOKEN      = "Authorization";
     public static final String USER_ID         = "tmx-user-id";
     public static final String ORGANISATION_ID = "tmx-organisation-id";
 
-    private static final ThreadLocal<String> correlationId= new ThreadLocal<>();
-    private static final ThreadLocal<String> authToken= new ThreadLocal<>();
-    private static final ThreadLocal<String> userId = new ThreadLocal<>();
-    private static final ThreadLocal<String> organisationId = new ThreadLocal<>();
-
-
-    public static String getCorrelationId() {
-        return correlationId.get();
-    }
-
-    public static void setCorrelationId(String cid) {
-        correlationId.set(cid);
-    }
-
-    public static String getAuthToken() {
-        return authToken.get();
-    }
+    /**
+     * The context seen by code running outside of any request.
+     */
+    public static final UserContext EMPTY = new UserContext(null, null, null, null);
 
-    public static void setAuthToken(String aToken) {
-        authToken.set(aToken);
-    }
-
-    public static String getUserId() {
-        return userId.get();
-    }
-
-    public static void setUserId(String aUser) {
-        userId.set(aUser);
-    }
-
-    public static String getOrganisationId() {
-        return organisationId.get();
-    }
+    private final String correlationId;
+    private final String authToken;
+    private final String userId;
+    private final String organisationId;
 
-    public static void setOrganisationId(String organisation) {
-        organisationId.set(organisation);
+    /**
+     * Creates a context that only carries a correlation id, for work that is not triggered
+     * by an HTTP request, such as handling a Kafka event.
+     *
+     * @param correlationId
+     * @return
+     */
+    public static UserContext withCorrelationId(String correlationId) {
+        return new UserContext(correlationId, null, null, null);
     }
 
-    public static HttpHeaders getHttpHeaders(){
+    public HttpHeaders getHttpHeaders(){
         HttpHeaders httpHeaders = new HttpHeaders();
         httpHeaders.set(CORRELATION_ID, getCorrelationId());
 
         return httpHeaders;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,29 @@
+package com.sadatmalik.optima.license.utils;
+
+import feign.RequestInterceptor;
+import feign.RequestTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * The Feign counterpart of the UserContextInterceptor. Spring Cloud OpenFeign applies every
+ * RequestInterceptor bean to all Feign clients, so calls made through the
+ * OrganisationFeignClient carry the same correlation ID and auth token as the incoming
+ * request.
+ *
+ * @author sadatmalik
+ */
+@Component
+public class UserContextFeignInterceptor implements RequestInterceptor {
+
+    @Override
+    public void apply(RequestTemplate template) {
+        UserContext context = UserContextHolder.getContext();
+
+        if (context.getCorrelationId() != null) {
+            template.header(UserContext.CORRELATION_ID, context.getCorrelationId());
+        }
+        if (context.getAuthToken() != null) {
+            template.header(UserContext.AUTH_TOKEN, context.getAuthToken());
+        }
+    }
+}
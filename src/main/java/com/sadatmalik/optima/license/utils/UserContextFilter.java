@@ -21,6 +21,9 @@ import java.io.IOException;
  * call, our code can retrieve the UserContext from the ThreadLocal storage variable and read
  * the value.
  *
+ * The context is built once per request and always cleared in a finally block, so a pooled
+ * Tomcat thread never carries one request's auth token into the next request it serves.
+ *
  * @author sm@creativefusion.net
  */
 @Slf4j
@@ -36,19 +39,20 @@ public class UserContextFilter implements Filter {
         HttpServletRequest httpServletRequest
                 = (HttpServletRequest) servletRequest;
 
-        UserContextHolder.getContext().setCorrelationId(
-                httpServletRequest.getHeader(UserContext.CORRELATION_ID) );
-        UserContextHolder.getContext().setUserId(
-                httpServletRequest.getHeader(UserContext.USER_ID));
-        UserContextHolder.getContext().setAuthToken(
-                httpServletRequest.getHeader(UserContext.AUTH_TOKEN));
-        UserContextHolder.getContext().setOrganisationId(
-                httpServletRequest.getHeader(UserContext.ORGANISATION_ID));
+        UserContextHolder.setContext(new UserContext(
+                httpServletRequest.getHeader(UserContext.CORRELATION_ID),
+                httpServletRequest.getHeader(UserContext.AUTH_TOKEN),
+                httpServletRequest.getHeader(UserContext.USER_ID),
+                httpServletRequest.getHeader(UserContext.ORGANISATION_ID)));
 
         log.debug("UserContextFilter Correlation id: {}",
                 UserContextHolder.getContext().getCorrelationId());
 
-        filterChain.doFilter(httpServletRequest, servletResponse);
+        try {
+            filterChain.doFilter(httpServletRequest, servletResponse);
+        } finally {
+            UserContextHolder.clearContext();
+        }
     }
 
     @Override
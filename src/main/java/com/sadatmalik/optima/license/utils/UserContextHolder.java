@@ -13,6 +13,15 @@ import org.springframework.util.Assert;
  * The ThreadLocal variable will be accessible by any method being invoked by the thread
  * processing the user’s request.
  *
+ * To avoid leaking one request's values into the next request served by the same pooled
+ * thread, whoever sets a context is responsible for clearing it again - the UserContextFilter
+ * does so once the request has been handled. When no context is set, getContext() returns
+ * the shared UserContext.EMPTY instance rather than creating and storing a new one.
+ *
+ * Work handed to another thread picks the context up through wrap(), which the
+ * UserContextTaskDecorator and UserContextPropagator use for Spring executors and
+ * Resilience4j thread-pool bulkheads respectively.
+ *
  * @author sadatmalik
  */
 public class UserContextHolder {
@@ -20,12 +29,7 @@ public class UserContextHolder {
 
     public static UserContext getContext(){
         UserContext context = userContext.get();
-
-        if (context == null) {
-            context = createEmptyContext();
-            userContext.set(context);
-        }
-        return userContext.get();
+        return context != null ? context : UserContext.EMPTY;
     }
 
     public static void setContext(UserContext context) {
@@ -34,7 +38,46 @@ public class UserContextHolder {
         userContext.set(context);
     }
 
+    public static void clearContext() {
+        userContext.remove();
+    }
+
     public static UserContext createEmptyContext(){
-        return new UserContext();
+        return UserContext.EMPTY;
+    }
+
+    /**
+     * Captures the current context and returns a task that runs with it on whichever thread
+     * executes it.
+     *
+     * @param task
+     * @return
+     */
+    public static Runnable wrap(Runnable task) {
+        return wrap(getContext(), task);
+    }
+
+    /**
+     * Returns a task that runs with the given context, restoring the executing thread's
+     * previous context afterwards.
+     *
+     * @param context
+     * @param task
+     * @return
+     */
+    public static Runnable wrap(UserContext context, Runnable task) {
+        return () -> {
+            UserContext previous = userContext.get();
+            userContext.set(context);
+            try {
+                task.run();
+            } finally {
+                if (previous == null) {
+                    userContext.remove();
+                } else {
+                    userContext.set(previous);
+                }
+            }
+        };
     }
-}
\ No newline at end of file
+}
@@ -35,11 +35,14 @@ public class UserContextInterceptor implements ClientHttpRequestInterceptor {
             throws IOException {
 
         HttpHeaders headers = request.getHeaders();
-
-        headers.add(UserContext.CORRELATION_ID,
-                UserContextHolder.getContext().getCorrelationId());
-        headers.add(UserContext.AUTH_TOKEN,
-                UserContextHolder.getContext().getAuthToken());
+        UserContext context = UserContextHolder.getContext();
+
+        if (context.getCorrelationId() != null) {
+            headers.add(UserContext.CORRELATION_ID, context.getCorrelationId());
+        }
+        if (context.getAuthToken() != null) {
+            headers.add(UserContext.AUTH_TOKEN, context.getAuthToken());
+        }
 
         return execution.execute(request, body);
     }
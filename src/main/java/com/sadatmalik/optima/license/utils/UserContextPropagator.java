@@ -0,0 +1,32 @@
+package com.sadatmalik.optima.license.utils;
+
+import io.github.resilience4j.core.ContextPropagator;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Carries the UserContext of the calling thread over to the Resilience4j thread-pool
+ * bulkhead threads, in the same way the SecurityContextPropagator does for the Spring
+ * Security context.
+ *
+ * @author sadatmalik
+ */
+public class UserContextPropagator implements ContextPropagator<UserContext> {
+
+    @Override
+    public Supplier<Optional<UserContext>> retrieve() {
+        return () -> Optional.of(UserContextHolder.getContext());
+    }
+
+    @Override
+    public Consumer<Optional<UserContext>> copy() {
+        return context -> context.ifPresent(UserContextHolder::setContext);
+    }
+
+    @Override
+    public Consumer<Optional<UserContext>> clear() {
+        return context -> UserContextHolder.clearContext();
+    }
+}
@@ -0,0 +1,22 @@
+package com.sadatmalik.optima.license.utils;
+
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Propagates the UserContext to tasks submitted to Spring-managed executors.
+ *
+ * Spring Boot applies a TaskDecorator bean to the application task executor, which also runs
+ * Spring MVC async work such as streamed responses, so those tasks see the same correlation
+ * id and auth token as the request that submitted them.
+ *
+ * @author sadatmalik
+ */
+@Component
+public class UserContextTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        return UserContextHolder.wrap(runnable);
+    }
+}
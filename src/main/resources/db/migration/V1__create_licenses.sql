@@ -0,0 +1,12 @@
+-- The licenses table as it was before the schema was migrated by this service. Existing
+-- schemas are baselined at V0, so this runs against them too: a shared schema that already
+-- has the licenses table keeps it, and one that does not gets it created here.
+create table if not exists licenses (
+    license_id      varchar(255) not null,
+    description     varchar(255),
+    organisation_id varchar(255) not null,
+    product_name    varchar(255) not null,
+    license_type    varchar(255) not null,
+    comment         varchar(255),
+    primary key (license_id)
+);
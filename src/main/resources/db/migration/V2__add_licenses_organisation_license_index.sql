@@ -0,0 +1,3 @@
+-- Backs the keyset-paginated and streamed license listings, which read an organisation's
+-- licenses in license id order.
+create index idx_licenses_organisation_license on licenses (organisation_id, license_id);
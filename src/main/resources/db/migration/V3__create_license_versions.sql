@@ -0,0 +1,8 @@
+-- Per-organisation version of the organisation's licenses, incremented by every license
+-- write and used to build the ETag of the license list. An organisation without a row is
+-- at version 0.
+create table license_versions (
+    organisation_id varchar(255) not null,
+    version         bigint       not null,
+    primary key (organisation_id)
+);
@@ -0,0 +1,3 @@
+-- Optimistic locking version of each license, incremented on every update. Existing rows
+-- start at version 0.
+alter table licenses add column version bigint not null default 0;
@@ -0,0 +1,10 @@
+-- Transactional outbox of license change events. Rows are written in the same transaction
+-- as the license change and deleted by the LicenseOutboxRelay once Kafka has acknowledged
+-- them, reading them in id order.
+create table license_outbox (
+    id              bigint       not null auto_increment,
+    organisation_id varchar(255) not null,
+    payload         mediumtext   not null,
+    created_at      datetime(6)  not null,
+    primary key (id)
+);
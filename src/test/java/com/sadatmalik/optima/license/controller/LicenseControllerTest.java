@@ -0,0 +1,109 @@
+package com.sadatmalik.optima.license.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sadatmalik.optima.license.model.License;
+import com.sadatmalik.optima.license.service.InvalidLicenseRequestException;
+import com.sadatmalik.optima.license.service.LicenseService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.MessageSource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class LicenseControllerTest {
+
+    private LicenseService licenseService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        licenseService = mock(LicenseService.class);
+        mockMvc = MockMvcBuilders.standaloneSetup(new LicenseController(licenseService,
+                new ObjectMapper(), new LicenseLinks(), mock(MessageSource.class))).build();
+    }
+
+    @Test
+    void answersAnInvalidPatchWithBadRequest() throws Exception {
+        when(licenseService.patchLicense(eq("org-1"), eq("license-1"), anyMap(), any(),
+                eq(new Locale("es"))))
+                .thenThrow(new InvalidLicenseRequestException("No se puede cambiar licenseId"));
+
+        mockMvc.perform(patch("/v1/organisation/org-1/license/license-1")
+                        .header("Accept-Language", "es")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"licenseId\":\"another-id\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("No se puede cambiar licenseId"));
+    }
+
+    @Test
+    void givesEveryPageOfAVersionItsOwnETag() throws Exception {
+        when(licenseService.getLicenseVersion("org-1")).thenReturn(7L);
+        when(licenseService.pageSize(anyInt())).thenReturn(100);
+        when(licenseService.getLicensesByOrganisation(eq("org-1"), any(), anyInt()))
+                .thenReturn(List.of(new License()));
+
+        String first = listETag("/v1/organisation/org-1/license/?limit=10");
+        String second = listETag("/v1/organisation/org-1/license/?limit=10&after=a");
+        String third = listETag("/v1/organisation/org-1/license/?limit=10&after=b");
+        String fourth = listETag("/v1/organisation/org-1/license/?limit=1&after=0a");
+
+        assertThat(List.of(first, second, third, fourth)).doesNotHaveDuplicates()
+                .allMatch(eTag -> eTag.matches("W/\"7-[0-9a-f]{32}\""));
+        assertThat(listETag("/v1/organisation/org-1/license/?limit=10&after=a"))
+                .isEqualTo(second);
+    }
+
+    @Test
+    void answersAnUnchangedListWithNotModified() throws Exception {
+        when(licenseService.getLicenseVersion("org-1")).thenReturn(7L);
+        when(licenseService.pageSize(anyInt())).thenReturn(100);
+        when(licenseService.getLicensesByOrganisation(eq("org-1"), any(), anyInt()))
+                .thenReturn(List.of(new License()));
+        String eTag = listETag("/v1/organisation/org-1/license/?limit=10&after=a");
+
+        mockMvc.perform(get("/v1/organisation/org-1/license/?limit=10&after=a")
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/v1/organisation/org-1/license/?limit=10&after=b")
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void leavesTheETagOutWhenTheVersionCannotBeRead() throws Exception {
+        when(licenseService.getLicenseVersion(anyString())).thenReturn(null);
+        when(licenseService.pageSize(anyInt())).thenReturn(100);
+        when(licenseService.getLicensesByOrganisation(eq("org-1"), any(), anyInt()))
+                .thenReturn(List.of(new License()));
+
+        mockMvc.perform(get("/v1/organisation/org-1/license/?limit=10"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG));
+    }
+
+    private String listETag(String uri) throws Exception {
+        return mockMvc.perform(get(uri))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+}
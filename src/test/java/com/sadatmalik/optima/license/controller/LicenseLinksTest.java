@@ -0,0 +1,72 @@
+package com.sadatmalik.optima.license.controller;
+
+import com.sadatmalik.optima.license.model.License;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LicenseLinksTest {
+
+    private final LicenseLinks licenseLinks = new LicenseLinks();
+
+    @BeforeEach
+    void setUp() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setServerName("localhost");
+        request.setServerPort(8080);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void expandsEveryLink() {
+        License license = licenseLinks.addLinks(license("f2a9c9d4"), "e6a625cc");
+
+        String licenses = "http://localhost:8080/v1/organisation/e6a625cc/license";
+        assertThat(license.getRequiredLink(IanaLinkRelations.SELF).getHref())
+                .isEqualTo(licenses + "/f2a9c9d4");
+        assertThat(license.getRequiredLink("createLicense").getHref()).isEqualTo(licenses);
+        assertThat(license.getRequiredLink("updateLicense").getHref()).isEqualTo(licenses);
+        assertThat(license.getRequiredLink("deleteLicense").getHref())
+                .isEqualTo(licenses + "/f2a9c9d4");
+    }
+
+    @Test
+    void encodesTheIds() {
+        License license = licenseLinks.addLinks(license("a b/c"), "org 1");
+
+        assertThat(license.getRequiredLink(IanaLinkRelations.SELF).getHref())
+                .isEqualTo("http://localhost:8080/v1/organisation/org%201/license/a%20b%2Fc");
+    }
+
+    @Test
+    void includesTheContextPath() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setServerName("localhost");
+        request.setServerPort(8080);
+        request.setContextPath("/licensing");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        License license = licenseLinks.addLinks(license("f2a9c9d4"), "e6a625cc");
+
+        assertThat(license.getRequiredLink(IanaLinkRelations.SELF).getHref())
+                .isEqualTo("http://localhost:8080/licensing/v1/organisation/e6a625cc" +
+                        "/license/f2a9c9d4");
+    }
+
+    private static License license(String licenseId) {
+        License license = new License();
+        license.setLicenseId(licenseId);
+        return license;
+    }
+}
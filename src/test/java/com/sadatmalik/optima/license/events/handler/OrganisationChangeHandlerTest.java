@@ -0,0 +1,129 @@
+package com.sadatmalik.optima.license.events.handler;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sadatmalik.optima.license.cache.OrganisationCacheRefresher;
+import com.sadatmalik.optima.license.service.client.OrganisationDiscoveryClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+class OrganisationChangeHandlerTest {
+
+    private OrganisationCacheRefresher cacheRefresher;
+    private SimpleMeterRegistry meterRegistry;
+    private OrganisationChangeHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        cacheRefresher = mock(OrganisationCacheRefresher.class);
+        meterRegistry = new SimpleMeterRegistry();
+        handler = new OrganisationChangeHandler(cacheRefresher,
+                mock(OrganisationDiscoveryClient.class), new ObjectMapper(), meterRegistry);
+    }
+
+    @Test
+    void appliesOnlyTheLastEventOfEachOrganisation() {
+        handler.loggerSink(List.of(
+                event("SAVE", "org-1"),
+                event("UPDATE", "org-1"),
+                event("UPDATE", "org-2"),
+                event("DELETE", "org-1")), null);
+
+        InOrder inOrder = inOrder(cacheRefresher);
+        inOrder.verify(cacheRefresher).organisationUpdated(eq("org-2"), any());
+        inOrder.verify(cacheRefresher).organisationDeleted("org-1");
+        verifyNoMoreInteractions(cacheRefresher);
+
+        assertThat(count("organisation.events.received")).isEqualTo(4);
+        assertThat(count("organisation.events.collapsed")).isEqualTo(2);
+        assertThat(count("organisation.events.applied")).isEqualTo(2);
+    }
+
+    @Test
+    void appliesASaveThatFollowsADelete() {
+        handler.loggerSink(List.of(
+                event("DELETE", "org-1"),
+                event("SAVE", "org-1")), null);
+
+        verify(cacheRefresher).organisationSaved("org-1");
+        verifyNoMoreInteractions(cacheRefresher);
+    }
+
+    @Test
+    void doesNotCountGetOrUnknownEventsAsApplied() {
+        handler.loggerSink(List.of(
+                event("GET", "org-1"),
+                event("RENAME", "org-1"),
+                event("UPDATE", "org-2")), null);
+
+        verify(cacheRefresher).organisationUpdated(eq("org-2"), any());
+        verifyNoMoreInteractions(cacheRefresher);
+
+        assertThat(count("organisation.events.received")).isEqualTo(3);
+        assertThat(count("organisation.events.applied")).isEqualTo(1);
+        assertThat(count("organisation.events.collapsed")).isZero();
+    }
+
+    @Test
+    void skipsAndCountsInvalidPayloads() {
+        handler.loggerSink(List.of(
+                "not json".getBytes(StandardCharsets.UTF_8),
+                "{\"action\":\"UPDATE\",\"organisationId\":".getBytes(StandardCharsets.UTF_8),
+                event("DELETE", "org-1"),
+                new byte[0]), null);
+
+        verify(cacheRefresher).organisationDeleted("org-1");
+        verifyNoMoreInteractions(cacheRefresher);
+
+        assertThat(count("organisation.events.received")).isEqualTo(4);
+        assertThat(count("organisation.events.invalid")).isEqualTo(3);
+        assertThat(count("organisation.events.applied")).isEqualTo(1);
+    }
+
+    @Test
+    void batchOfOnlyInvalidPayloadsChangesNothing() {
+        handler.loggerSink(List.of("{".getBytes(StandardCharsets.UTF_8)), null);
+
+        verifyNoInteractions(cacheRefresher);
+        assertThat(count("organisation.events.invalid")).isEqualTo(1);
+        assertThat(count("organisation.events.applied")).isZero();
+    }
+
+    @Test
+    void recordsTheLagOfTheOldestEvent() {
+        long now = System.currentTimeMillis();
+
+        handler.loggerSink(List.of(event("SAVE", "org-1"), event("SAVE", "org-2")),
+                List.of(now - 5000, now - 1000));
+
+        assertThat(meterRegistry.get("organisation.events.lag").timer().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("organisation.events.lag").timer()
+                .totalTime(TimeUnit.MILLISECONDS))
+                .isGreaterThanOrEqualTo(5000);
+    }
+
+    private double count(String name) {
+        return meterRegistry.get(name).counter().count();
+    }
+
+    private static byte[] event(String action, String organisationId) {
+        return String.format("{\"type\":\"OrganisationChangeModel\",\"action\":\"%s\"," +
+                        "\"organisationId\":\"%s\",\"correlationId\":\"correlation-%s\"}",
+                action, organisationId, organisationId).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,93 @@
+package com.sadatmalik.optima.license.repository;
+
+import com.sadatmalik.optima.license.model.Organisation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static com.sadatmalik.optima.license.repository.OrganisationCodecTest.assertSameFields;
+import static com.sadatmalik.optima.license.repository.OrganisationCodecTest.organisation;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class OrganisationBinaryRepositoryTest {
+
+    private RedisTemplate<String, byte[]> redisTemplate;
+    private ValueOperations<String, byte[]> valueOperations;
+    private OrganisationBinaryRepository repository;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(RedisTemplate.class);
+        valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        repository = new OrganisationBinaryRepository(redisTemplate);
+    }
+
+    @Test
+    void savedOrganisationIsReadBack() {
+        Organisation organisation = organisation("org-1", "Société Générale", null, "",
+                "888888888");
+        Duration timeToLive = Duration.ofHours(1);
+
+        repository.save(organisation, timeToLive);
+
+        ArgumentCaptor<byte[]> value = ArgumentCaptor.forClass(byte[].class);
+        verify(valueOperations).set(eq("organisation:v2:org-1"), value.capture(),
+                eq(timeToLive));
+
+        when(valueOperations.get("organisation:v2:org-1")).thenReturn(value.getValue());
+        assertSameFields(repository.findById("org-1"), organisation);
+    }
+
+    @Test
+    void missingOrganisationIsNull() {
+        assertThat(repository.findById("org-1")).isNull();
+    }
+
+    @Test
+    void corruptEntryIsTreatedAsAMiss() {
+        byte[] encoded = OrganisationCodec.encode(organisation("org-1", "a", "b", "c", "d"));
+        when(valueOperations.get("organisation:v2:org-1"))
+                .thenReturn(Arrays.copyOf(encoded, encoded.length - 2));
+
+        assertThat(repository.findById("org-1")).isNull();
+    }
+
+    @Test
+    void findAllByIdSkipsMissingAndCorruptEntries() {
+        Organisation first = organisation("org-1", "First", null, null, null);
+        Organisation third = organisation("org-3", "Third", null, null, null);
+        when(valueOperations.multiGet(List.of("organisation:v2:org-1",
+                "organisation:v2:org-2", "organisation:v2:org-3", "organisation:v2:org-4")))
+                .thenReturn(Arrays.asList(OrganisationCodec.encode(first), null,
+                        OrganisationCodec.encode(third),
+                        new byte[]{OrganisationCodec.FORMAT_VERSION, 50}));
+
+        Map<String, Organisation> found = repository.findAllById(
+                List.of("org-1", "org-2", "org-3", "org-4"));
+
+        assertThat(found).containsOnlyKeys("org-1", "org-3");
+        assertSameFields(found.get("org-1"), first);
+        assertSameFields(found.get("org-3"), third);
+    }
+
+    @Test
+    void findAllByIdWithNoIdsDoesNotCallRedis() {
+        assertThat(repository.findAllById(List.of())).isEmpty();
+
+        verifyNoInteractions(valueOperations);
+    }
+}
@@ -0,0 +1,141 @@
+package com.sadatmalik.optima.license.repository;
+
+import com.sadatmalik.optima.license.model.Organisation;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrganisationCodecTest {
+
+    @Test
+    void roundTripsEveryField() {
+        Organisation organisation = organisation("e6a625cc-718b-48c2-ac76-1dfdff9a531e",
+                "Ostock", "Illary Huaylupo", "illaryhs@gmail.com", "888888888");
+
+        Organisation decoded = OrganisationCodec.decode(OrganisationCodec.encode(organisation));
+
+        assertSameFields(decoded, organisation);
+    }
+
+    @Test
+    void roundTripsNullFields() {
+        Organisation organisation = organisation("org-1", null, null, null, null);
+
+        Organisation decoded = OrganisationCodec.decode(OrganisationCodec.encode(organisation));
+
+        assertSameFields(decoded, organisation);
+        assertThat(decoded.getName()).isNull();
+    }
+
+    @Test
+    void keepsEmptyValuesDistinctFromNull() {
+        Organisation organisation = organisation("org-1", "", null, "", null);
+
+        Organisation decoded = OrganisationCodec.decode(OrganisationCodec.encode(organisation));
+
+        assertThat(decoded.getName()).isEmpty();
+        assertThat(decoded.getContactName()).isNull();
+        assertThat(decoded.getContactEmail()).isEmpty();
+        assertThat(decoded.getContactPhone()).isNull();
+    }
+
+    @Test
+    void roundTripsNonAsciiValues() {
+        Organisation organisation = organisation("org-ñ", "Société Générale",
+                "José Núñez 日本語", "contacto@ejemplo.es", "☎ +34 600 000 000 😀");
+
+        Organisation decoded = OrganisationCodec.decode(OrganisationCodec.encode(organisation));
+
+        assertSameFields(decoded, organisation);
+    }
+
+    @Test
+    void roundTripsValuesLongerThanOneVarintByte() {
+        char[] name = new char[1000];
+        Arrays.fill(name, 'x');
+        Organisation organisation = organisation("org-1", new String(name), null, null, null);
+
+        Organisation decoded = OrganisationCodec.decode(OrganisationCodec.encode(organisation));
+
+        assertThat(decoded.getName()).hasSize(1000);
+    }
+
+    @Test
+    void encodesMoreCompactlyThanTheFieldNames() {
+        byte[] encoded = OrganisationCodec.encode(organisation("1", "a", "b", "c", "d"));
+
+        assertThat(encoded).hasSize(1 + 5 * 2);
+        assertThat(encoded[0]).isEqualTo(OrganisationCodec.FORMAT_VERSION);
+    }
+
+    @Test
+    void decodesNullAndEmptyInputToNull() {
+        assertThat(OrganisationCodec.decode(null)).isNull();
+        assertThat(OrganisationCodec.decode(new byte[0])).isNull();
+    }
+
+    @Test
+    void decodesUnknownFormatVersionToNull() {
+        byte[] encoded = OrganisationCodec.encode(organisation("org-1", "a", "b", "c", "d"));
+        encoded[0] = (byte) (OrganisationCodec.FORMAT_VERSION + 1);
+
+        assertThat(OrganisationCodec.decode(encoded)).isNull();
+    }
+
+    @Test
+    void decodesEveryTruncationToNull() {
+        byte[] encoded = OrganisationCodec.encode(organisation("org-1", "Ostock",
+                "Illary Huaylupo", "illaryhs@gmail.com", "888888888"));
+
+        for (int length = 1; length < encoded.length; length++) {
+            assertThat(OrganisationCodec.decode(Arrays.copyOf(encoded, length)))
+                    .as("truncated to %d bytes", length)
+                    .isNull();
+        }
+    }
+
+    @Test
+    void decodesTrailingBytesToNull() {
+        byte[] encoded = OrganisationCodec.encode(organisation("org-1", "a", "b", "c", "d"));
+
+        assertThat(OrganisationCodec.decode(Arrays.copyOf(encoded, encoded.length + 1)))
+                .isNull();
+    }
+
+    @Test
+    void decodesLengthPastTheEndToNull() {
+        byte[] corrupt = {OrganisationCodec.FORMAT_VERSION, 100, 'a', 'b'};
+
+        assertThat(OrganisationCodec.decode(corrupt)).isNull();
+    }
+
+    @Test
+    void decodesOverlongVarintToNull() {
+        byte[] corrupt = {OrganisationCodec.FORMAT_VERSION,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01};
+
+        assertThat(OrganisationCodec.decode(corrupt)).isNull();
+    }
+
+    static Organisation organisation(String id, String name, String contactName,
+                                     String contactEmail, String contactPhone) {
+        Organisation organisation = new Organisation();
+        organisation.setId(id);
+        organisation.setName(name);
+        organisation.setContactName(contactName);
+        organisation.setContactEmail(contactEmail);
+        organisation.setContactPhone(contactPhone);
+        return organisation;
+    }
+
+    static void assertSameFields(Organisation actual, Organisation expected) {
+        assertThat(actual).isNotNull();
+        assertThat(actual.getId()).isEqualTo(expected.getId());
+        assertThat(actual.getName()).isEqualTo(expected.getName());
+        assertThat(actual.getContactName()).isEqualTo(expected.getContactName());
+        assertThat(actual.getContactEmail()).isEqualTo(expected.getContactEmail());
+        assertThat(actual.getContactPhone()).isEqualTo(expected.getContactPhone());
+    }
+}
@@ -0,0 +1,120 @@
+package com.sadatmalik.optima.license.service;
+
+import com.sadatmalik.optima.license.config.LicenseConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LicenseIdGeneratorTest {
+
+    private static final String CROCKFORD_BASE32 = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+
+    @Test
+    void randomIdsAreVersion4Uuids() {
+        String id = generator(LicenseConfig.IdStrategy.RANDOM).nextId();
+
+        assertThat(id).hasSize(36);
+        assertThat(UUID.fromString(id).version()).isEqualTo(4);
+    }
+
+    @Test
+    void uuid7IdsCarryTheVersionAndVariant() {
+        LicenseIdGenerator generator = generator(LicenseConfig.IdStrategy.UUID7);
+
+        for (int i = 0; i < 1000; i++) {
+            String id = generator.nextId();
+
+            assertThat(id).hasSize(36);
+            assertThat(id.charAt(14)).isEqualTo('7');
+            assertThat(id.charAt(19)).isIn('8', '9', 'a', 'b');
+
+            UUID uuid = UUID.fromString(id);
+            assertThat(uuid.version()).isEqualTo(7);
+            assertThat(uuid.variant()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void uuid7IdsStartWithTheCreationTime() {
+        long before = System.currentTimeMillis();
+        String id = generator(LicenseConfig.IdStrategy.UUID7).nextId();
+        long after = System.currentTimeMillis();
+
+        long millis = UUID.fromString(id).getMostSignificantBits() >>> 16;
+
+        assertThat(millis).isBetween(before, after);
+    }
+
+    @Test
+    void ulidIdsAre26CrockfordCharacters() {
+        LicenseIdGenerator generator = generator(LicenseConfig.IdStrategy.ULID);
+
+        for (int i = 0; i < 1000; i++) {
+            String id = generator.nextId();
+
+            assertThat(id).hasSize(26);
+            for (char c : id.toCharArray()) {
+                assertThat(CROCKFORD_BASE32.indexOf(c))
+                        .as("character %s of %s", c, id)
+                        .isNotNegative();
+            }
+        }
+    }
+
+    @Test
+    void ulidIdsStartWithTheCreationTime() {
+        long before = System.currentTimeMillis();
+        String id = generator(LicenseConfig.IdStrategy.ULID).nextId();
+        long after = System.currentTimeMillis();
+
+        long millis = 0;
+        for (char c : id.substring(0, 10).toCharArray()) {
+            millis = (millis << 5) | CROCKFORD_BASE32.indexOf(c);
+        }
+
+        assertThat(millis).isBetween(before, after);
+    }
+
+    @Test
+    void uuid7IdsFromLaterMillisecondsSortLater() throws InterruptedException {
+        assertLaterIdsSortLater(generator(LicenseConfig.IdStrategy.UUID7));
+    }
+
+    @Test
+    void ulidIdsFromLaterMillisecondsSortLater() throws InterruptedException {
+        assertLaterIdsSortLater(generator(LicenseConfig.IdStrategy.ULID));
+    }
+
+    @Test
+    void idsAreUnique() {
+        for (LicenseConfig.IdStrategy strategy : LicenseConfig.IdStrategy.values()) {
+            LicenseIdGenerator generator = generator(strategy);
+            Set<String> ids = new HashSet<>();
+            for (int i = 0; i < 10000; i++) {
+                ids.add(generator.nextId());
+            }
+            assertThat(ids).as("%s ids", strategy).hasSize(10000);
+        }
+    }
+
+    private static void assertLaterIdsSortLater(LicenseIdGenerator generator)
+            throws InterruptedException {
+        String previous = generator.nextId();
+        for (int i = 0; i < 20; i++) {
+            Thread.sleep(2);
+            String next = generator.nextId();
+            assertThat(next).isGreaterThan(previous);
+            previous = next;
+        }
+    }
+
+    private static LicenseIdGenerator generator(LicenseConfig.IdStrategy strategy) {
+        LicenseConfig config = new LicenseConfig();
+        config.setIdStrategy(strategy);
+        return new LicenseIdGenerator(config);
+    }
+}
@@ -0,0 +1,97 @@
+package com.sadatmalik.optima.license.service;
+
+import com.sadatmalik.optima.license.config.LicenseConfig;
+import com.sadatmalik.optima.license.model.License;
+import com.sadatmalik.optima.license.repository.LicenseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.MessageSource;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LicenseServiceTest {
+
+    private static final Locale SPANISH = new Locale("es");
+
+    @Mock
+    private MessageSource messages;
+
+    @Mock
+    private LicenseRepository licenseRepository;
+
+    @Mock
+    private LicenseConfig licenseConfig;
+
+    @InjectMocks
+    private LicenseService licenseService;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(messages.getMessage(anyString(), any(), any()))
+                .thenAnswer(invocation -> invocation.getArgument(0) + " %s %s");
+    }
+
+    @Test
+    void rejectsAnEmptyPatch() {
+        assertRejected(Collections.emptyMap());
+    }
+
+    @Test
+    void rejectsAPatchOfAnUnknownField() {
+        assertRejected(Map.of("licenseId", "another-id"));
+    }
+
+    @Test
+    void rejectsAPatchWithANonStringValue() {
+        assertRejected(Map.of("comment", 42));
+    }
+
+    @Test
+    void rejectsAPatchClearingARequiredField() {
+        assertRejected(Map.of("productName", " "));
+
+        Map<String, Object> changes = new HashMap<>();
+        changes.put("licenseType", null);
+        assertRejected(changes);
+    }
+
+    @Test
+    void rejectsBulkRequestsOverTheLimit() {
+        when(licenseConfig.getBulkMaxItems()).thenReturn(2);
+        List<License> licenses = List.of(new License(), new License(), new License());
+
+        assertThatThrownBy(() -> licenseService.createLicenses(licenses, "org-1", SPANISH))
+                .isInstanceOf(InvalidLicenseRequestException.class)
+                .hasMessageStartingWith("license.bulk.limit.message");
+        assertThatThrownBy(() -> licenseService.updateLicenses(licenses, "org-1", SPANISH))
+                .isInstanceOf(InvalidLicenseRequestException.class);
+        assertThatThrownBy(() -> licenseService.deleteLicenses(
+                List.of("a", "b", "c"), "org-1", SPANISH))
+                .isInstanceOf(InvalidLicenseRequestException.class);
+        verifyNoInteractions(licenseRepository);
+    }
+
+    private void assertRejected(Map<String, Object> changes) {
+        assertThatThrownBy(() -> licenseService.patchLicense("org-1", "license-1", changes,
+                null, SPANISH))
+                .isInstanceOf(InvalidLicenseRequestException.class)
+                .hasMessageStartingWith("license.patch.invalid.message");
+        verifyNoInteractions(licenseRepository);
+    }
+}